@@ -0,0 +1,129 @@
+package com.github.zikani03.jdbi.benchmarks;
+
+import com.github.zikani03.jdbi.CapitalizeCustomizer;
+import com.github.zikani03.jdbi.Counter;
+import com.github.zikani03.jdbi.Valid;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of each annotation against the same statement without it
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class AnnotationBenchmarks {
+    static final String INSERT_POST = "INSERT INTO posts(content, user_id) VALUES (:content, :user_id)";
+
+    @Param({"100"})
+    public int batchSize;
+
+    private BenchmarkDatabase db;
+    private PostDAO postDao;
+    private PersonDAO personDao;
+    private Post post;
+    private Person person;
+    private List<Person> people;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+        postDao = db.getHandle().attach(PostDAO.class);
+        personDao = db.getHandle().attach(PersonDAO.class);
+        post = new Post("Yay! Post content!", 1);
+        person = new Person("John", "Phiri", "phiri@gmail.com");
+        people = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            people.add(new Person("John", "Phiri", "phiri" + i + "@gmail.com"));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        db.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public void insertPost() {
+        postDao.insert(post);
+    }
+
+    @Benchmark
+    public void insertPostWithCounter() {
+        postDao.insertCounted(post);
+    }
+
+    @Benchmark
+    public int insertPostWithHandle() {
+        return db.getHandle().createUpdate(INSERT_POST)
+            .bind("content", post.getContent())
+            .bind("user_id", post.getUserId())
+            .execute();
+    }
+
+    @Benchmark
+    public int insertPostWithCapitalizeCustomizer() {
+        return db.getHandle().createUpdate(INSERT_POST)
+            .bind("content", post.getContent())
+            .bind("user_id", post.getUserId())
+            .addCustomizer(new CapitalizeCustomizer("content"))
+            .execute();
+    }
+
+    @Benchmark
+    public void insertPerson() {
+        personDao.insert(person);
+    }
+
+    @Benchmark
+    public void insertPersonWithValid() {
+        personDao.insertValid(person);
+    }
+
+    @Benchmark
+    public int[] insertPeopleBatch() {
+        return personDao.insertAll(people);
+    }
+
+    @Benchmark
+    public int[] insertPeopleBatchWithValid() {
+        return personDao.insertAllValid(people);
+    }
+
+    public interface PostDAO {
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        void insert(@BindBean("p") Post post);
+
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId")
+        void insertCounted(@BindBean("p") Post post);
+    }
+
+    public interface PersonDAO {
+        @SqlUpdate("INSERT INTO people(firstName, lastName, email) VALUES (:p.firstName, :p.lastName, :p.email)")
+        void insert(@BindBean("p") Person person);
+
+        @SqlUpdate("INSERT INTO people(firstName, lastName, email) VALUES (:p.firstName, :p.lastName, :p.email)")
+        void insertValid(@BindBean("p") @Valid Person person);
+
+        @SqlBatch("INSERT INTO people(firstName, lastName, email) VALUES (:p.firstName, :p.lastName, :p.email)")
+        int[] insertAll(@BindBean("p") List<Person> people);
+
+        @SqlBatch("INSERT INTO people(firstName, lastName, email) VALUES (:p.firstName, :p.lastName, :p.email)")
+        int[] insertAllValid(@BindBean("p") @Valid List<Person> people);
+    }
+}
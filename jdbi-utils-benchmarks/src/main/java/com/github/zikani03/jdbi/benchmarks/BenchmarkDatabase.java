@@ -0,0 +1,48 @@
+package com.github.zikani03.jdbi.benchmarks;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+
+import java.util.UUID;
+
+/**
+ * In-memory HSQLDB database shared by the benchmarks
+ */
+public class BenchmarkDatabase {
+    private final Jdbi jdbi;
+    private final Handle handle;
+
+    public BenchmarkDatabase() {
+        jdbi = Jdbi.create("jdbc:hsqldb:mem:benchmark-" + UUID.randomUUID());
+        jdbi.installPlugin(new SqlObjectPlugin());
+        handle = jdbi.open();
+        handle.execute("create table posts(id identity primary key, content varchar(140), user_id integer)");
+        handle.execute("create table users(id identity primary key, posts_count integer)");
+        handle.execute("create table people(id identity primary key, firstName varchar(50), lastName varchar(50), email varchar(255))");
+        reset();
+    }
+
+    /**
+     * Empties the tables so that each iteration starts from the same state
+     */
+    public void reset() {
+        handle.execute("truncate table posts restart identity");
+        handle.execute("truncate table people restart identity");
+        handle.execute("delete from users");
+        handle.execute("insert into users(id, posts_count) values (1, 0)");
+    }
+
+    public Jdbi getJdbi() {
+        return jdbi;
+    }
+
+    public Handle getHandle() {
+        return handle;
+    }
+
+    public void close() {
+        handle.execute("shutdown");
+        handle.close();
+    }
+}
@@ -0,0 +1,535 @@
+package com.github.zikani03.jdbi.benchmarks;
+
+import com.github.zikani03.jdbi.BulkInsert;
+import com.github.zikani03.jdbi.Coalesce;
+import com.github.zikani03.jdbi.ContentionRetry;
+import com.github.zikani03.jdbi.Counter;
+import com.github.zikani03.jdbi.CounterRollup;
+import com.github.zikani03.jdbi.CounterValue;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+
+import java.io.PrintStream;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Drives {@link Counter} updates from many threads against an in-memory HSQLDB database and checks
+ * the counters against the real row counts afterwards. Each mode counts the posts a different way:
+ * <ul>
+ *     <li><code>counter</code> - a plain {@link Counter} on each insert and delete</li>
+ *     <li><code>coalesce</code> - inserts {@link Coalesce}d into batches across the threads, without deletes</li>
+ *     <li><code>bulk</code> - {@link BulkInsert}s of <code>batch</code> posts, without deletes</li>
+ *     <li><code>rollup</code> - counters with a {@link CounterRollup}, whose totals are checked too</li>
+ *     <li><code>retry</code> - counters with <code>retryOnContention</code></li>
+ *     <li><code>returning</code> - counters that read their new value, which is checked to be handed out once per
+ *     key when there are no deletes. Run it with <code>transactional=true</code> on HSQLDB, which reads the value
+ *     with a second statement</li>
+ * </ul>
+ *
+ * Options are passed as <code>name=value</code> arguments:
+ * <ul>
+ *     <li><code>mode</code> - one of the modes above (default counter)</li>
+ *     <li><code>threads</code> - number of writer threads (default 8)</li>
+ *     <li><code>keys</code> - number of counter rows (default 100)</li>
+ *     <li><code>skew</code> - Zipf exponent of the key distribution, 0 for uniform (default 0)</li>
+ *     <li><code>seconds</code> - duration of the run (default 10)</li>
+ *     <li><code>deletes</code> - fraction of operations that delete a post and decrement (default 0)</li>
+ *     <li><code>transactional</code> - run each statement and its counter update in one transaction (default false)</li>
+ *     <li><code>tx</code> - HSQLDB transaction control: locks, mvlocks or mvcc (default locks)</li>
+ *     <li><code>batch</code> - posts per bulk insert (default 10)</li>
+ * </ul>
+ *
+ * <pre>
+ *     java -cp benchmarks.jar com.github.zikani03.jdbi.benchmarks.CounterStressHarness threads=32 skew=1.2
+ * </pre>
+ */
+public final class CounterStressHarness {
+    enum Mode {
+        COUNTER, COALESCE, BULK, ROLLUP, RETRY, RETURNING
+    }
+
+    private final Mode mode;
+    private final int threads;
+    private final int keys;
+    private final double skew;
+    private final int seconds;
+    private final double deletes;
+    private final boolean transactional;
+    private final String tx;
+    private final int batch;
+
+    CounterStressHarness(Map<String, String> options) {
+        this.mode = Mode.valueOf(options.getOrDefault("mode", "counter").toUpperCase(Locale.ROOT));
+        this.threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        this.keys = Integer.parseInt(options.getOrDefault("keys", "100"));
+        this.skew = Double.parseDouble(options.getOrDefault("skew", "0"));
+        this.seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        this.deletes = Double.parseDouble(options.getOrDefault("deletes", "0"));
+        this.transactional = Boolean.parseBoolean(options.getOrDefault("transactional", "false"));
+        this.tx = options.getOrDefault("tx", "locks");
+        this.batch = Integer.parseInt(options.getOrDefault("batch", "10"));
+        if (deletes > 0 && (mode == Mode.COALESCE || mode == Mode.BULK)) {
+            throw new IllegalArgumentException("The " + mode + " mode does not return the ids of the posts to delete");
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 1) {
+                throw new IllegalArgumentException("Expected name=value but got: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        new CounterStressHarness(options).run().print(System.out);
+    }
+
+    Report run() throws InterruptedException {
+        Jdbi jdbi = Jdbi.create("jdbc:hsqldb:mem:stress-" + UUID.randomUUID() + ";hsqldb.tx=" + tx);
+        jdbi.installPlugin(new SqlObjectPlugin());
+        try (Handle handle = jdbi.open()) {
+            handle.execute("create table posts(id identity primary key, content varchar(140), user_id integer)");
+            handle.execute("create table users(id identity primary key, posts_count integer)");
+            for (int key = 1; key <= keys; key++) {
+                handle.execute("insert into users(id, posts_count) values (?, 0)", key);
+            }
+            CounterRollup rollup = null;
+            if (mode == Mode.ROLLUP) {
+                handle.execute("create table post_activity(counter_name varchar(100), counter_key varchar(100), "
+                    + "granularity varchar(10), bucket_start timestamp, bucket_count bigint, "
+                    + "primary key (counter_name, counter_key, granularity, bucket_start))");
+                rollup = CounterRollup.create(jdbi, "post_activity").setGranularities(ChronoUnit.DAYS);
+            }
+
+            ZipfDistribution distribution = new ZipfDistribution(keys, skew);
+            AtomicBoolean running = new AtomicBoolean(true);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Worker> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Worker worker = new Worker(jdbi, distribution, new Random(i), running, start);
+                workers.add(worker);
+                worker.thread.start();
+            }
+            LockWaitSampler sampler = new LockWaitSampler(jdbi, running);
+            sampler.thread.start();
+
+            long began = System.nanoTime();
+            start.countDown();
+            TimeUnit.SECONDS.sleep(seconds);
+            running.set(false);
+            for (Worker worker : workers) {
+                worker.thread.join();
+            }
+            sampler.thread.join();
+            long elapsed = System.nanoTime() - began;
+            if (rollup != null) {
+                rollup.close();
+            }
+
+            return new Report(this, workers, sampler, elapsed, verify(handle), verifyRollup(handle), duplicateValues(workers));
+        }
+    }
+
+    /**
+     * Compares each counter with the number of rows that reference it
+     *
+     * @return the lost and double-counted updates, in that order
+     */
+    private long[] verify(Handle handle) {
+        long lost = 0, doubled = 0;
+        List<Map<String, Object>> rows = handle.createQuery(
+            "SELECT u.id, u.posts_count, (SELECT COUNT(*) FROM posts p WHERE p.user_id = u.id) AS actual FROM users u")
+            .mapToMap()
+            .list();
+        for (Map<String, Object> row : rows) {
+            long counted = ((Number) row.get("posts_count")).longValue();
+            long actual = ((Number) row.get("actual")).longValue();
+            if (counted < actual) {
+                lost += actual - counted;
+            } else {
+                doubled += counted - actual;
+            }
+        }
+        return new long[]{lost, doubled};
+    }
+
+    /**
+     * Compares the rolled up changes of each counter with the number of rows that reference it
+     *
+     * @return the sum of the differences
+     */
+    private long verifyRollup(Handle handle) {
+        if (mode != Mode.ROLLUP) {
+            return 0;
+        }
+        Map<String, Long> rolledUp = new HashMap<>();
+        for (Map<String, Object> row : handle.createQuery("SELECT counter_key, SUM(bucket_count) AS total FROM post_activity "
+            + "WHERE counter_name = 'users.posts_count' AND granularity = 'DAYS' GROUP BY counter_key").mapToMap().list()) {
+            rolledUp.put((String) row.get("counter_key"), ((Number) row.get("total")).longValue());
+        }
+        long mismatches = 0;
+        List<Map<String, Object>> rows = handle.createQuery(
+            "SELECT u.id, (SELECT COUNT(*) FROM posts p WHERE p.user_id = u.id) AS actual FROM users u")
+            .mapToMap()
+            .list();
+        for (Map<String, Object> row : rows) {
+            long actual = ((Number) row.get("actual")).longValue();
+            mismatches += Math.abs(actual - rolledUp.getOrDefault(String.valueOf(row.get("id")), 0L));
+        }
+        return mismatches;
+    }
+
+    /**
+     * Counts the values handed out more than once for the same key, which only increase without deletes
+     */
+    private long duplicateValues(List<Worker> workers) {
+        if (mode != Mode.RETURNING || deletes > 0) {
+            return 0;
+        }
+        Map<Integer, Set<Long>> seen = new HashMap<>();
+        long duplicates = 0;
+        for (Worker worker : workers) {
+            for (long[] value : worker.returned) {
+                if (!seen.computeIfAbsent((int) value[0], k -> new HashSet<>()).add(value[1])) {
+                    duplicates++;
+                }
+            }
+        }
+        return duplicates;
+    }
+
+    private final class Worker implements Runnable {
+        final Thread thread = new Thread(this, "counter-stress");
+        final Jdbi jdbi;
+        final ZipfDistribution distribution;
+        final Random random;
+        final AtomicBoolean running;
+        final CountDownLatch start;
+        final List<Long> ownPosts = new ArrayList<>();
+        final List<long[]> returned = new ArrayList<>();
+        long[] value;
+        long[] latencies = new long[1 << 16];
+        int operations;
+        long failures;
+        long conflicts;
+
+        Worker(Jdbi jdbi, ZipfDistribution distribution, Random random, AtomicBoolean running, CountDownLatch start) {
+            this.jdbi = jdbi;
+            this.distribution = distribution;
+            this.random = random;
+            this.running = running;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            try (Handle handle = jdbi.open()) {
+                PostDAO dao = handle.attach(PostDAO.class);
+                start.await();
+                while (running.get()) {
+                    long began = System.nanoTime();
+                    value = null;
+                    try {
+                        if (transactional) {
+                            handle.useTransaction(h -> operate(dao));
+                        } else {
+                            operate(dao);
+                        }
+                        if (value != null) {
+                            returned.add(value);
+                        }
+                    } catch (RuntimeException e) {
+                        failures++;
+                        if (isConflict(e)) {
+                            conflicts++;
+                        }
+                    }
+                    record(System.nanoTime() - began);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void operate(PostDAO dao) {
+            if (!ownPosts.isEmpty() && random.nextDouble() < deletes) {
+                long id = ownPosts.remove(ownPosts.size() - 1);
+                StressPost post = new StressPost(id, dao.userOf(id));
+                if (mode == Mode.ROLLUP) {
+                    dao.deleteRolledUp(post);
+                } else if (mode == Mode.RETRY) {
+                    dao.deleteRetrying(post);
+                } else {
+                    dao.delete(post);
+                }
+                return;
+            }
+            int key = distribution.sample(random);
+            StressPost post = new StressPost(0, key);
+            switch (mode) {
+                case COALESCE:
+                    dao.insertCoalesced(post);
+                    break;
+                case BULK:
+                    List<StressPost> posts = new ArrayList<>(batch);
+                    posts.add(post);
+                    while (posts.size() < batch) {
+                        posts.add(new StressPost(0, distribution.sample(random)));
+                    }
+                    dao.insertAll(posts);
+                    break;
+                case ROLLUP:
+                    ownPosts.add(dao.insertRolledUp(post));
+                    break;
+                case RETRY:
+                    ownPosts.add(dao.insertRetrying(post));
+                    break;
+                case RETURNING:
+                    ownPosts.add(dao.insertReturning(post, v -> value = new long[]{key, v}));
+                    break;
+                default:
+                    ownPosts.add(dao.insert(post));
+            }
+        }
+
+        private void record(long latency) {
+            if (operations == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[operations++] = latency;
+        }
+    }
+
+    /**
+     * Lock timeouts, deadlocks and serialization failures, classified the same way {@link ContentionRetry} does
+     */
+    static boolean isConflict(Throwable e) {
+        return ContentionRetry.isContention(e);
+    }
+
+    /**
+     * Samples the sessions that are waiting on another session's locks
+     */
+    private static final class LockWaitSampler implements Runnable {
+        final Thread thread = new Thread(this, "lock-wait-sampler");
+        final Jdbi jdbi;
+        final AtomicBoolean running;
+        final LongAdder samples = new LongAdder();
+        final LongAdder waitingSessions = new LongAdder();
+        int maxWaiting;
+
+        LockWaitSampler(Jdbi jdbi, AtomicBoolean running) {
+            this.jdbi = jdbi;
+            this.running = running;
+        }
+
+        @Override
+        public void run() {
+            try (Handle handle = jdbi.open()) {
+                while (running.get()) {
+                    int waiting = handle.createQuery(
+                        "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_SESSIONS WHERE THIS_WAITING_FOR <> ''")
+                        .mapTo(Integer.class)
+                        .findOnly();
+                    samples.increment();
+                    waitingSessions.add(waiting);
+                    maxWaiting = Math.max(maxWaiting, waiting);
+                    TimeUnit.MILLISECONDS.sleep(1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Samples keys from 1 to n with probability proportional to 1 / k^s
+     */
+    static final class ZipfDistribution {
+        private final double[] cumulative;
+
+        ZipfDistribution(int n, double s) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 1; k <= n; k++) {
+                sum += 1.0 / Math.pow(k, s);
+                cumulative[k - 1] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        int sample(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return (index >= 0 ? index : -index - 1) + 1;
+        }
+    }
+
+    static final class Report {
+        final CounterStressHarness config;
+        final long operations;
+        final long failures;
+        final long conflicts;
+        final long elapsedNanos;
+        final long[] latencies;
+        final double averageWaitingSessions;
+        final int maxWaitingSessions;
+        final long lost;
+        final long doubled;
+        final long rollupMismatches;
+        final long duplicateValues;
+
+        Report(CounterStressHarness config, List<Worker> workers, LockWaitSampler sampler, long elapsedNanos, long[] mismatches,
+               long rollupMismatches, long duplicateValues) {
+            this.config = config;
+            long ops = 0, failed = 0, conflicted = 0;
+            for (Worker w : workers) {
+                ops += w.operations;
+                failed += w.failures;
+                conflicted += w.conflicts;
+            }
+            this.operations = ops;
+            this.failures = failed;
+            this.conflicts = conflicted;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = new long[(int) ops];
+            int offset = 0;
+            for (Worker w : workers) {
+                System.arraycopy(w.latencies, 0, latencies, offset, w.operations);
+                offset += w.operations;
+            }
+            Arrays.sort(latencies);
+            long samples = sampler.samples.sum();
+            this.averageWaitingSessions = samples == 0 ? 0 : (double) sampler.waitingSessions.sum() / samples;
+            this.maxWaitingSessions = sampler.maxWaiting;
+            this.lost = mismatches[0];
+            this.doubled = mismatches[1];
+            this.rollupMismatches = rollupMismatches;
+            this.duplicateValues = duplicateValues;
+        }
+
+        /**
+         * @return the lost, double-counted, wrongly rolled up and duplicate returned updates
+         */
+        long mismatches() {
+            return lost + doubled + rollupMismatches + duplicateValues;
+        }
+
+        private double percentileMicros(double p) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1);
+            return latencies[Math.max(0, index)] / 1000.0;
+        }
+
+        void print(PrintStream out) {
+            out.printf("mode=%s threads=%d keys=%d skew=%.2f deletes=%.2f transactional=%s tx=%s%n",
+                config.mode.name().toLowerCase(Locale.ROOT), config.threads, config.keys, config.skew, config.deletes, config.transactional, config.tx);
+            out.printf("operations: %d (%.1f ops/s), failures: %d, conflicts: %d%n",
+                operations, operations / (elapsedNanos / 1e9), failures, conflicts);
+            out.printf("latency us: p50=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                percentileMicros(0.5), percentileMicros(0.99), percentileMicros(0.999), percentileMicros(1.0));
+            out.printf("sessions waiting on locks: avg=%.2f max=%d%n", averageWaitingSessions, maxWaitingSessions);
+            out.printf("counter mismatches: lost=%d double-counted=%d%n", lost, doubled);
+            if (config.mode == Mode.ROLLUP) {
+                out.printf("rollup mismatches: %d%n", rollupMismatches);
+            }
+            if (config.mode == Mode.RETURNING) {
+                out.printf("duplicate returned values: %s%n", config.deletes > 0 ? "not checked with deletes" : duplicateValues);
+            }
+        }
+    }
+
+    public static class StressPost {
+        private final long id;
+        private final long userId;
+
+        public StressPost(long id, long userId) {
+            this.id = id;
+            this.userId = userId;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getContent() {
+            return "Stress post content";
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+    }
+
+    public interface PostDAO {
+        @GetGeneratedKeys
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId")
+        long insert(@BindBean("p") StressPost post);
+
+        @SqlUpdate("DELETE FROM posts WHERE id = :p.id")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", decrementing = true)
+        void delete(@BindBean("p") StressPost post);
+
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId")
+        @Coalesce(maxBatch = 64, maxDelayMicros = 500)
+        int insertCoalesced(@BindBean("p") StressPost post);
+
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId")
+        @BulkInsert(initialChunkSize = 50, minChunkSize = 10)
+        long insertAll(@BindBean("p") Iterable<StressPost> posts);
+
+        @GetGeneratedKeys
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", rollupTable = "post_activity")
+        long insertRolledUp(@BindBean("p") StressPost post);
+
+        @SqlUpdate("DELETE FROM posts WHERE id = :p.id")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", decrementing = true, rollupTable = "post_activity")
+        void deleteRolledUp(@BindBean("p") StressPost post);
+
+        @GetGeneratedKeys
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", retryOnContention = true)
+        long insertRetrying(@BindBean("p") StressPost post);
+
+        @SqlUpdate("DELETE FROM posts WHERE id = :p.id")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", decrementing = true, retryOnContention = true)
+        void deleteRetrying(@BindBean("p") StressPost post);
+
+        @GetGeneratedKeys
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", returning = true)
+        long insertReturning(@BindBean("p") StressPost post, @CounterValue LongConsumer value);
+
+        @SqlQuery("SELECT user_id FROM posts WHERE id = :id")
+        long userOf(@Bind("id") long id);
+    }
+}
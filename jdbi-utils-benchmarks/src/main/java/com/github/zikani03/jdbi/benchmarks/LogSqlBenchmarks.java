@@ -0,0 +1,72 @@
+package com.github.zikani03.jdbi.benchmarks;
+
+import com.github.zikani03.jdbi.LogSql;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@link LogSql} at each level. The simple logger logs at INFO, so the DEBUG case
+ * measures a disabled level. Logged statements are written to a file to keep them out of the JMH output.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.logFile=jmh-logsql.log")
+@State(Scope.Thread)
+public class LogSqlBenchmarks {
+
+    @Param({"NONE", "DEBUG", "INFO"})
+    public String level;
+
+    private BenchmarkDatabase db;
+    private PostDAO dao;
+    private Post post;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+        switch (level) {
+            case "DEBUG":
+                dao = db.getHandle().attach(DebugLoggingPostDAO.class);
+                break;
+            case "INFO":
+                dao = db.getHandle().attach(InfoLoggingPostDAO.class);
+                break;
+            default:
+                dao = db.getHandle().attach(PostDAO.class);
+        }
+        post = new Post("Yay! Post content!", 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        db.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public void insertPost() {
+        dao.insert(post);
+    }
+
+    public interface PostDAO {
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        void insert(@BindBean("p") Post post);
+    }
+
+    @LogSql
+    public interface DebugLoggingPostDAO extends PostDAO {
+    }
+
+    @LogSql(level = LogSql.LogLevel.INFO)
+    public interface InfoLoggingPostDAO extends PostDAO {
+    }
+}
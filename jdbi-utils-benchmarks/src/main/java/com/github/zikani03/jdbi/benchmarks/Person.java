@@ -0,0 +1,36 @@
+package com.github.zikani03.jdbi.benchmarks;
+
+import javax.validation.constraints.Email;
+import javax.validation.constraints.NotEmpty;
+
+/**
+ * Person JavaBean with validation constraints for the benchmarks
+ */
+public class Person {
+    @NotEmpty
+    private final String firstName;
+
+    @NotEmpty
+    private final String lastName;
+
+    @Email
+    private final String email;
+
+    public Person(String firstName, String lastName, String email) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.zikani03.jdbi.benchmarks;
+
+/**
+ * Post JavaBean for the benchmarks
+ */
+public class Post {
+    private final String content;
+    private final long userId;
+
+    public Post(String content, long userId) {
+        this.content = content;
+        this.userId = userId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.zikani03.jdbi.benchmarks;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs {@link CounterStressHarness} briefly in each mode and checks that no counter update is lost or counted twice
+ */
+public class TestCounterStressHarness {
+
+    @Test
+    public void testShouldKeepPlainCountersExact() throws Exception {
+        assertNoMismatches("mode=counter", "deletes=0.2");
+    }
+
+    @Test
+    public void testShouldKeepCoalescedCountersExact() throws Exception {
+        assertNoMismatches("mode=coalesce");
+    }
+
+    @Test
+    public void testShouldKeepBulkInsertCountersExact() throws Exception {
+        assertNoMismatches("mode=bulk", "batch=20");
+    }
+
+    @Test
+    public void testShouldKeepRollupsExact() throws Exception {
+        assertNoMismatches("mode=rollup", "deletes=0.2");
+    }
+
+    @Test
+    public void testShouldKeepRetriedCountersExact() throws Exception {
+        assertNoMismatches("mode=retry", "deletes=0.2", "transactional=true", "tx=mvcc");
+    }
+
+    @Test
+    public void testShouldReturnEachCounterValueOnce() throws Exception {
+        assertNoMismatches("mode=returning", "transactional=true");
+    }
+
+    @Test
+    public void testShouldRejectDeletesWithoutPostIds() {
+        assertThrows(IllegalArgumentException.class, () -> harness("mode=bulk", "deletes=0.2"));
+    }
+
+    private static void assertNoMismatches(String... options) throws Exception {
+        CounterStressHarness.Report report = harness(options).run();
+
+        assertTrue(report.operations > 0);
+        assertEquals(0, report.mismatches());
+    }
+
+    private static CounterStressHarness harness(String... options) {
+        Map<String, String> config = new HashMap<>();
+        config.put("threads", "4");
+        config.put("keys", "10");
+        config.put("skew", "1.2");
+        config.put("seconds", "1");
+        for (String option : options) {
+            config.put(option.substring(0, option.indexOf('=')), option.substring(option.indexOf('=') + 1));
+        }
+        return new CounterStressHarness(config);
+    }
+}
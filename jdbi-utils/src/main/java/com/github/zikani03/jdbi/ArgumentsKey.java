@@ -0,0 +1,26 @@
+package com.github.zikani03.jdbi;
+
+import java.util.Arrays;
+
+/**
+ * Key for the arguments of an SqlObject method call, compared by value including array contents
+ */
+final class ArgumentsKey {
+    private final Object[] args;
+    private final int hash;
+
+    ArgumentsKey(Object[] args) {
+        this.args = args == null ? new Object[0] : args.clone();
+        this.hash = Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ArgumentsKey && Arrays.deepEquals(args, ((ArgumentsKey) o).args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
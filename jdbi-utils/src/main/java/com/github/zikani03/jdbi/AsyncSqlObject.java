@@ -0,0 +1,42 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.extension.ExtensionCallback;
+import org.jdbi.v3.core.extension.ExtensionConsumer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An asynchronous view of a SqlObject type, created by {@link AsyncSqlObjects#attach(Jdbi, Class)}. Each call runs
+ * on its own handle, off the caller's thread.
+ */
+public final class AsyncSqlObject<T> {
+    private final Jdbi jdbi;
+    private final Class<T> sqlObjectType;
+
+    AsyncSqlObject(Jdbi jdbi, Class<T> sqlObjectType) {
+        this.jdbi = jdbi;
+        this.sqlObjectType = sqlObjectType;
+    }
+
+    /**
+     * @return a future completed with the result of the callback, or with what it throws
+     */
+    public <R, X extends Exception> CompletableFuture<R> call(ExtensionCallback<R, T, X> callback) {
+        return AsyncSqlObjects.dispatcher(jdbi).submit(() -> jdbi.withExtension(sqlObjectType, callback));
+    }
+
+    /**
+     * @return a future completed when the callback returns, or with what it throws
+     */
+    public <X extends Exception> CompletableFuture<Void> use(ExtensionConsumer<T, X> callback) {
+        return call(sqlObject -> {
+            callback.useExtension(sqlObject);
+            return null;
+        });
+    }
+
+    public Class<T> getSqlObjectType() {
+        return sqlObjectType;
+    }
+}
@@ -0,0 +1,242 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Jdbi;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs SqlObject calls off the caller's thread and returns their results as <code>CompletableFuture</code>s:
+ *
+ * <pre>
+ *     AsyncSqlObject&lt;PersonDAO&gt; people = AsyncSqlObjects.attach(jdbi, PersonDAO.class);
+ *     CompletableFuture&lt;Person&gt; person = people.call(dao -&gt; dao.findById(1));
+ * </pre>
+ *
+ * or through an interface that mirrors the SqlObject with <code>CompletableFuture</code> or
+ * <code>CompletionStage</code> return types, and may add default methods composing them:
+ *
+ * <pre>
+ *     public interface AsyncPersonDAO {
+ *         CompletableFuture&lt;Person&gt; findById(int id);
+ *     }
+ *
+ *     AsyncPersonDAO people = AsyncSqlObjects.attach(jdbi, PersonDAO.class, AsyncPersonDAO.class);
+ * </pre>
+ *
+ * Each call gets its own handle. The calls run on virtual threads when the JVM has them (Java 21 and later),
+ * otherwise on a pool of daemon threads. At most {@link #setMaxConcurrency(Jdbi, int)} calls of a Jdbi run at once,
+ * the others wait in a queue without holding a thread, so that they don't pile up waiting for pooled connections.
+ */
+public final class AsyncSqlObjects {
+    /**
+     * The default number of calls of a Jdbi that run at once, the default size of common connection pools
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+    private static final Map<Jdbi, Dispatcher> DISPATCHERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private AsyncSqlObjects() {
+    }
+
+    /**
+     * Sets how many calls of the Jdbi run at once, which should be the size of its connection pool. The limit
+     * counts the calls already running, and applies to the queued ones.
+     */
+    public static void setMaxConcurrency(Jdbi jdbi, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        dispatcher(jdbi).setMaxConcurrency(maxConcurrency);
+    }
+
+    /**
+     * @return an asynchronous view of the SqlObject type on the Jdbi
+     */
+    public static <T> AsyncSqlObject<T> attach(Jdbi jdbi, Class<T> sqlObjectType) {
+        return new AsyncSqlObject<>(jdbi, sqlObjectType);
+    }
+
+    /**
+     * @param asyncType - An interface with a method for each SqlObject method to call, with the same name and
+     *                  parameter types, returning a <code>CompletableFuture</code> or <code>CompletionStage</code>
+     * @return an implementation of the interface running the SqlObject methods on the Jdbi
+     * @throws IllegalStateException if a method of the interface does not mirror a SqlObject method
+     */
+    public static <T, A> A attach(Jdbi jdbi, Class<T> sqlObjectType, Class<A> asyncType) {
+        Map<Method, Method> targets = new HashMap<>();
+        Map<Method, MethodHandle> defaults = new HashMap<>();
+        for (Method method : asyncType.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if (method.isDefault()) {
+                defaults.put(method, defaultMethod(method));
+                continue;
+            }
+            Class<?> returnType = method.getReturnType();
+            if (returnType != CompletableFuture.class && returnType != CompletionStage.class) {
+                throw new IllegalStateException(String.format("%s.%s must return a CompletableFuture or CompletionStage",
+                    asyncType.getSimpleName(), method.getName()));
+            }
+            try {
+                targets.put(method, sqlObjectType.getMethod(method.getName(), method.getParameterTypes()));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException(String.format("%s has no method %s matching %s.%s",
+                    sqlObjectType.getSimpleName(), method.getName(), asyncType.getSimpleName(), method.getName()), e);
+            }
+        }
+        AsyncSqlObject<T> sqlObject = attach(jdbi, sqlObjectType);
+        Object proxy = Proxy.newProxyInstance(asyncType.getClassLoader(), new Class<?>[]{asyncType}, (self, method, args) -> {
+            Method target = targets.get(method);
+            if (target != null) {
+                return sqlObject.call(dao -> SqlObjectMethods.invoke(target, dao, args));
+            }
+            MethodHandle defaultMethod = defaults.get(method);
+            if (defaultMethod != null) {
+                return defaultMethod.bindTo(self).invokeWithArguments(args == null ? new Object[0] : args);
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return self == args[0];
+                case "hashCode":
+                    return System.identityHashCode(self);
+                case "toString":
+                    return asyncType.getSimpleName() + " on " + sqlObjectType.getSimpleName();
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+        return asyncType.cast(proxy);
+    }
+
+    /**
+     * Finds the implementation of a default method, to call it on the proxy. The lookup that can call it comes
+     * from <code>MethodHandles.privateLookupIn</code> on Java 9 and later, looked up reflectively since the library
+     * is compiled for Java 8, and from the private <code>Lookup</code> constructor on Java 8.
+     */
+    private static MethodHandle defaultMethod(Method method) {
+        Class<?> type = method.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup;
+            try {
+                lookup = (MethodHandles.Lookup) MethodHandles.class
+                    .getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class)
+                    .invoke(null, type, MethodHandles.lookup());
+            } catch (NoSuchMethodException e) {
+                Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+                constructor.setAccessible(true);
+                lookup = constructor.newInstance(type, MethodHandles.Lookup.PRIVATE);
+            }
+            return lookup.unreflectSpecial(method, type);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalStateException("Cannot call the default method " + method, e);
+        }
+    }
+
+    static Dispatcher dispatcher(Jdbi jdbi) {
+        return DISPATCHERS.computeIfAbsent(jdbi, j -> new Dispatcher(DEFAULT_MAX_CONCURRENCY));
+    }
+
+    /**
+     * Starts queued calls while fewer than the maximum are running
+     */
+    static final class Dispatcher {
+        private volatile int maxConcurrency;
+        private final ExecutorService executor;
+        private final Queue<Call<?>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger running = new AtomicInteger();
+
+        Dispatcher(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            this.executor = newExecutor();
+        }
+
+        void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            drain();
+        }
+
+        <R> CompletableFuture<R> submit(Callable<R> callable) {
+            Call<R> call = new Call<>(callable);
+            queue.add(call);
+            drain();
+            return call.future;
+        }
+
+        private void drain() {
+            while (!queue.isEmpty()) {
+                int current = running.get();
+                if (current >= maxConcurrency) {
+                    return;
+                }
+                if (!running.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+                Call<?> call = queue.poll();
+                if (call == null) {
+                    running.decrementAndGet();
+                    continue;
+                }
+                try {
+                    executor.execute(() -> {
+                        try {
+                            call.run();
+                        } finally {
+                            running.decrementAndGet();
+                            drain();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    running.decrementAndGet();
+                    call.future.completeExceptionally(e);
+                }
+            }
+        }
+
+        /**
+         * Creates a virtual thread per task executor when the JVM has one, looked up reflectively since the
+         * library is compiled for Java 8, otherwise a pool of daemon threads that exit when idle. The dispatcher
+         * bounds the threads in use by the maximum concurrency, so the pool itself is unbounded.
+         */
+        private static ExecutorService newExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                AtomicInteger count = new AtomicInteger();
+                return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                    Thread thread = new Thread(r, "async-sqlobjects-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    private static final class Call<R> {
+        final Callable<R> callable;
+        final CompletableFuture<R> future = new CompletableFuture<>();
+
+        Call(Callable<R> callable) {
+            this.callable = callable;
+        }
+
+        void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(callable.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
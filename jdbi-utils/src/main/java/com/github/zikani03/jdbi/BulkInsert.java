@@ -0,0 +1,116 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.Handler;
+import org.jdbi.v3.sqlobject.HandlerDecorator;
+import org.jdbi.v3.sqlobject.SqlMethodDecoratingAnnotation;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Inserts the rows of an <code>Iterable</code>, <code>Iterator</code> or <code>Stream</code> parameter of a single row
+ * <code>@SqlUpdate</code> method in chunks, holding only one chunk in memory at a time:
+ *
+ * <pre>
+ *     &#64;SqlUpdate("INSERT INTO people(firstName, lastName) VALUES (:p.firstName, :p.lastName)")
+ *     &#64;BulkInsert
+ *     long insertAll(&#64;BindBean("p") &#64;Valid Stream&lt;Person&gt; people);
+ * </pre>
+ *
+ * When the SQL is a plain <code>INSERT ... VALUES (...)</code> with named parameters and the database supports it,
+ * each chunk is sent as one multi-row <code>VALUES</code> statement, otherwise as a JDBC batch. The chunk size starts
+ * at {@link #initialChunkSize()} and is doubled or halved to keep each chunk close to {@link #targetChunkMillis()};
+ * the size reached is kept for the next call of the method.
+ *
+ * Each chunk is executed in its own transaction, unless the method is called in a transaction. {@link Valid} rows
+ * are validated before their chunk is executed and a {@link Counter} is applied once per chunk. The method can return
+ * <code>void</code>, <code>int</code> or <code>long</code>, the number of rows inserted.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlMethodDecoratingAnnotation(BulkInsert.Decorator.class)
+@Documented
+public @interface BulkInsert {
+
+    /**
+     * The number of rows in the first chunk. Defaults to 500
+     */
+    int initialChunkSize() default 500;
+
+    /**
+     * The smallest number of rows in a chunk. Defaults to 50
+     */
+    int minChunkSize() default 50;
+
+    /**
+     * The largest number of rows in a chunk. Defaults to 10000
+     */
+    int maxChunkSize() default 10000;
+
+    /**
+     * The time a chunk should take to execute, in milliseconds. Defaults to 200
+     */
+    long targetChunkMillis() default 200;
+
+    /**
+     * Whether to send chunks as multi-row <code>VALUES</code> statements when possible. Defaults to true
+     */
+    boolean multiRowValues() default true;
+
+    class Decorator implements HandlerDecorator {
+        private static final List<Class<?>> ROW_TYPES = Arrays.asList(Iterable.class, Iterator.class, Stream.class);
+
+        @Override
+        public Handler decorateHandler(Handler base, Class<?> sqlObjectType, Method method) {
+            final BulkInsert config = method.getAnnotation(BulkInsert.class);
+            SqlObjectMethods.checkUpdate(BulkInsert.class, sqlObjectType, method);
+            final Class<?> returnType = method.getReturnType();
+            if (!Arrays.asList(void.class, int.class, Integer.class, long.class, Long.class).contains(returnType)) {
+                throw new IllegalStateException(String.format("@BulkInsert method %s.%s must return void, int or long, not %s",
+                    sqlObjectType.getSimpleName(), method.getName(), returnType.getSimpleName()));
+            }
+            if (config.minChunkSize() < 1 || config.minChunkSize() > config.initialChunkSize()
+                || config.initialChunkSize() > config.maxChunkSize()) {
+                throw new IllegalStateException("@BulkInsert needs 0 < minChunkSize <= initialChunkSize <= maxChunkSize on " + method);
+            }
+            final int rowsIndex = rowsIndex(sqlObjectType, method);
+            final ParameterBinder binder = new ParameterBinder(BulkInsert.class, method, Collections.singletonList(Valid.class), rowsIndex);
+            final Counter counter = SqlObjectMethods.findCounter(sqlObjectType, method);
+            final BulkInserter inserter = new BulkInserter(config, method.getParameters(), rowsIndex, binder,
+                counter == null ? null : Counter.Factory.counter(counter));
+            return (target, args, handle) -> {
+                long rows = inserter.insert(handle, sqlObjectType, method, args);
+                if (returnType == int.class || returnType == Integer.class) {
+                    return Math.toIntExact(rows);
+                }
+                return returnType == void.class ? null : rows;
+            };
+        }
+
+        private static int rowsIndex(Class<?> sqlObjectType, Method method) {
+            Parameter[] parameters = method.getParameters();
+            int index = -1;
+            for (int i = 0; i < parameters.length; i++) {
+                Class<?> type = parameters[i].getType();
+                if (ROW_TYPES.stream().anyMatch(t -> t.isAssignableFrom(type))) {
+                    if (index >= 0) {
+                        index = -1;
+                        break;
+                    }
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                throw new IllegalStateException(String.format("@BulkInsert method %s.%s must have one Iterable, Iterator or Stream parameter",
+                    sqlObjectType.getSimpleName(), method.getName()));
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.extension.HandleSupplier;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.core.statement.Update;
+import org.jdbi.v3.sqlobject.SqlObjects;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Executes the calls of one {@link BulkInsert} method. Rows are pulled from the argument one chunk at a time and
+ * each chunk is sent as a multi-row <code>VALUES</code> statement or as a JDBC batch. The chunk size learned from
+ * the measured chunk latency is kept between calls.
+ */
+final class BulkInserter {
+    private static final Pattern INSERT_VALUES = Pattern.compile("(?is)^\\s*(INSERT\\s+INTO\\s+.+?\\bVALUES\\s*)(\\(.*\\))\\s*;?\\s*$");
+
+    private final BulkInsert config;
+    private final Parameter[] parameters;
+    private final int rowsIndex;
+    private final ParameterBinder binder;
+    private final CounterCustomizer counter;
+    private final Function<Object[], Object> counterKey;
+    private final long targetNanos;
+    private volatile int chunkSize;
+
+    BulkInserter(BulkInsert config, Parameter[] parameters, int rowsIndex, ParameterBinder binder, CounterCustomizer counter) {
+        this.config = config;
+        this.parameters = parameters;
+        this.rowsIndex = rowsIndex;
+        this.binder = binder;
+        this.counter = counter;
+        this.counterKey = counter == null ? null : binder.resolver(counter.getBinding());
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(config.targetChunkMillis());
+        this.chunkSize = config.initialChunkSize();
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Inserts the rows of one call of the method
+     *
+     * @return the number of rows inserted
+     */
+    long insert(HandleSupplier handle, Class<?> sqlObjectType, Method method, Object[] args) throws Exception {
+        validateArguments(args);
+        Handle h = handle.getHandle();
+        String sql = handle.getConfig(SqlObjects.class).getSqlLocator().locate(sqlObjectType, method, handle.getConfig());
+        MultiRowValues values = config.multiRowValues() ? MultiRowValues.parse(sql, maxParameters(h)) : null;
+        Object rows = args[rowsIndex];
+        if (rows == null) {
+            return 0;
+        }
+        Iterator<?> iterator = rows instanceof Stream ? ((Stream<?>) rows).iterator()
+            : rows instanceof Iterable ? ((Iterable<?>) rows).iterator()
+            : (Iterator<?>) rows;
+        Valid valid = parameters[rowsIndex].getAnnotation(Valid.class);
+        long inserted = 0;
+        try {
+            List<Object[]> chunk = new ArrayList<>();
+            while (iterator.hasNext()) {
+                int size = chunkSize;
+                chunk.clear();
+                while (chunk.size() < size && iterator.hasNext()) {
+                    Object row = iterator.next();
+                    if (valid != null) {
+                        Validation.throwOnFailedValidation(row, valid.groups());
+                    }
+                    Object[] rowArgs = args.clone();
+                    rowArgs[rowsIndex] = row;
+                    chunk.add(rowArgs);
+                }
+                long start = System.nanoTime();
+                inserted += h.isInTransaction()
+                    ? executeChunk(h, sql, values, chunk)
+                    : h.inTransaction(tx -> executeChunk(tx, sql, values, chunk));
+                adapt(System.nanoTime() - start, chunk.size() == size);
+            }
+        } finally {
+            if (rows instanceof Stream) {
+                ((Stream<?>) rows).close();
+            }
+        }
+        return inserted;
+    }
+
+    private void validateArguments(Object[] args) {
+        for (int i = 0; i < parameters.length; i++) {
+            Valid valid = parameters[i].getAnnotation(Valid.class);
+            if (valid != null && i != rowsIndex) {
+                Validation.throwOnFailedValidation(args[i], valid.groups());
+            }
+        }
+    }
+
+    private long executeChunk(Handle h, String sql, MultiRowValues values, List<Object[]> chunk) throws SQLException {
+        long inserted = 0;
+        if (values != null) {
+            int perStatement = values.maxRows;
+            for (int from = 0; from < chunk.size(); from += perStatement) {
+                int to = Math.min(chunk.size(), from + perStatement);
+                Update statement = h.createUpdate(values.sql(to - from));
+                for (int i = from; i < to; i++) {
+                    binder.bind(statement, chunk.get(i), "r" + (i - from));
+                }
+                inserted += statement.execute();
+            }
+        } else {
+            PreparedBatch statement = h.prepareBatch(sql);
+            for (Object[] rowArgs : chunk) {
+                binder.bind(statement, rowArgs);
+                statement.add();
+            }
+            for (int count : statement.execute()) {
+                inserted += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            }
+        }
+        if (counter != null) {
+            Map<String, Integer> deltas = new HashMap<>();
+            for (Object[] rowArgs : chunk) {
+                deltas.merge(String.valueOf(counterKey.apply(rowArgs)), 1, Integer::sum);
+            }
+            counter.updateCounters(h, deltas);
+        }
+        return inserted;
+    }
+
+    /**
+     * Doubles the chunk size while full chunks take less than half the target time, halves it when a chunk
+     * takes longer than the target
+     */
+    private void adapt(long elapsedNanos, boolean full) {
+        int size = chunkSize;
+        if (full && elapsedNanos * 2 < targetNanos) {
+            chunkSize = Math.min(config.maxChunkSize(), size * 2);
+        } else if (elapsedNanos > targetNanos) {
+            chunkSize = Math.max(config.minChunkSize(), size / 2);
+        }
+    }
+
+    /**
+     * @return the number of parameters a statement of the database can have, or 0 if it has no multi-row VALUES
+     */
+    private static int maxParameters(Handle h) throws SQLException {
+        String product = h.getConnection().getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        if (product.contains("oracle")) {
+            return 0;
+        }
+        if (product.contains("sql server")) {
+            return 2000;
+        }
+        if (product.contains("sqlite")) {
+            return 999;
+        }
+        return 30000;
+    }
+
+    /**
+     * An <code>INSERT ... VALUES (...)</code> statement rewritten to insert several rows, with the named parameters
+     * of the n-th row prefixed with <code>rn.</code>
+     */
+    private static final class MultiRowValues {
+        private final String head;
+        private final List<String> tuple;
+        private final int maxRows;
+
+        private MultiRowValues(String head, List<String> tuple, int maxRows) {
+            this.head = head;
+            this.tuple = tuple;
+            this.maxRows = maxRows;
+        }
+
+        /**
+         * @return the rewritable statement, or null if the SQL is not a single row insert with named parameters
+         */
+        static MultiRowValues parse(String sql, int maxParameters) {
+            Matcher matcher = INSERT_VALUES.matcher(sql);
+            if (maxParameters == 0 || !matcher.matches() || !isTuple(matcher.group(2))) {
+                return null;
+            }
+            List<String> head = split(matcher.group(1));
+            List<String> tuple = split(matcher.group(2));
+            if (head == null || head.size() > 1 || tuple == null || tuple.size() == 1) {
+                return null;
+            }
+            int parameters = (tuple.size() - 1) / 2;
+            return new MultiRowValues(matcher.group(1), tuple, Math.max(1, maxParameters / parameters));
+        }
+
+        String sql(int rows) {
+            StringBuilder sql = new StringBuilder(head);
+            for (int row = 0; row < rows; row++) {
+                if (row > 0) {
+                    sql.append(", ");
+                }
+                for (int i = 0; i < tuple.size(); i++) {
+                    if (i % 2 == 1) {
+                        sql.append(":r").append(row).append('.');
+                    }
+                    sql.append(tuple.get(i));
+                }
+            }
+            return sql.toString();
+        }
+
+        private static boolean isTuple(String values) {
+            int depth = 0;
+            for (int i = 0; i < values.length(); i++) {
+                char c = values.charAt(i);
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0 && i < values.length() - 1) {
+                    return false;
+                }
+            }
+            return depth == 0;
+        }
+
+        /**
+         * Splits the SQL into text and parameter names, alternately, skipping quoted text and <code>::</code> casts
+         *
+         * @return the parts, or null if the SQL has positional parameters
+         */
+        private static List<String> split(String sql) {
+            List<String> parts = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            int i = 0;
+            while (i < sql.length()) {
+                char c = sql.charAt(i);
+                if (c == '\'' || c == '"') {
+                    int end = sql.indexOf(c, i + 1);
+                    end = end < 0 ? sql.length() : end + 1;
+                    text.append(sql, i, end);
+                    i = end;
+                } else if (c == ':' && i + 1 < sql.length() && sql.charAt(i + 1) == ':') {
+                    text.append("::");
+                    i += 2;
+                } else if (c == ':' && i + 1 < sql.length() && isNamePart(sql.charAt(i + 1))) {
+                    int end = i + 1;
+                    while (end < sql.length() && isNamePart(sql.charAt(end))) {
+                        end++;
+                    }
+                    parts.add(text.toString());
+                    parts.add(sql.substring(i + 1, end));
+                    text.setLength(0);
+                    i = end;
+                } else if (c == '?') {
+                    return null;
+                } else {
+                    text.append(c);
+                    i++;
+                }
+            }
+            parts.add(text.toString());
+            return parts;
+        }
+
+        private static boolean isNamePart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+        }
+    }
+}
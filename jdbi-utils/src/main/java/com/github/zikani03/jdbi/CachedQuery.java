@@ -0,0 +1,69 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.Handler;
+import org.jdbi.v3.sqlobject.HandlerDecorator;
+import org.jdbi.v3.sqlobject.SqlMethodDecoratingAnnotation;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of an SqlObject query method, keyed by the method and its arguments.
+ *
+ * Cached results are discarded when their time to live passes, when the cache for the method is full, or when a
+ * method annotated with {@link InvalidatesCache} modifies one of the {@link #tables()} on the same <code>Jdbi</code>.
+ * Results of methods returning a <code>List</code>, <code>Set</code>, <code>Map</code> or <code>Collection</code>
+ * are cached as unmodifiable views; other results are shared between callers and must not be modified.
+ * Arguments are compared with <code>equals</code>. Calls inside a transaction neither read nor fill the cache,
+ * so uncommitted rows are never shared with other handles.
+ *
+ * Statistics are available from {@link QueryCache}.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlMethodDecoratingAnnotation(CachedQuery.Decorator.class)
+@Documented
+public @interface CachedQuery {
+
+    /**
+     * The tables the query reads, used for invalidation
+     */
+    String[] tables() default {};
+
+    /**
+     * How long a result is cached for. Zero or less caches results until they are evicted or invalidated.
+     * Defaults to 60 seconds
+     */
+    long ttl() default 60;
+
+    /**
+     * The unit of the {@link #ttl()}
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * The maximum number of results cached for the method, the least recently used is evicted first.
+     * Defaults to 1000
+     */
+    int maxSize() default 1000;
+
+    class Decorator implements HandlerDecorator {
+        @Override
+        public Handler decorateHandler(Handler base, Class<?> sqlObjectType, Method method) {
+            final CachedQuery config = method.getAnnotation(CachedQuery.class);
+            final Class<?> returnType = method.getReturnType();
+            SqlObjectMethods.checkMaterialized(CachedQuery.class, sqlObjectType, method);
+            if (config.maxSize() < 1) {
+                throw new IllegalStateException("@CachedQuery maxSize must be positive on " + method);
+            }
+            return (target, args, handle) -> {
+                if (SqlObjectMethods.inTransaction(handle)) {
+                    return base.invoke(target, args, handle);
+                }
+                return QueryCache.of(handle.getJdbi())
+                    .get(method, config, args, () -> SqlObjectMethods.readOnly(returnType, base.invoke(target, args, handle)));
+            };
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.Handler;
+import org.jdbi.v3.sqlobject.HandlerDecorator;
+import org.jdbi.v3.sqlobject.SqlMethodDecoratingAnnotation;
+import org.jdbi.v3.sqlobject.SqlObjects;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizer;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Gathers concurrent calls of a single row <code>@SqlUpdate</code> method on the same <code>Jdbi</code> into one
+ * <code>PreparedBatch</code>, executed in a transaction on the handle of one of the callers. Each caller gets the update count
+ * of its own row, or its own exception: when a batch fails its rows are executed one by one.
+ *
+ * The method can return <code>void</code>, <code>int</code>, <code>long</code> or <code>boolean</code>.
+ * A {@link Counter} on the method is applied once per batch, with one update per counter record, and
+ * {@link Valid} parameters are validated in the caller's thread. Customizing annotations on the SqlObject type,
+ * e.g. {@link LogSql}, are applied to the batch; on the method only {@link Counter} is allowed. Calls made on a handle in a transaction,
+ * e.g. in <code>useTransaction</code> or a <code>@Transaction</code> method, are executed directly, so that they
+ * commit and roll back with it.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlMethodDecoratingAnnotation(Coalesce.Decorator.class)
+@Documented
+public @interface Coalesce {
+
+    /**
+     * The maximum number of calls in a batch. Defaults to 100
+     */
+    int maxBatch() default 100;
+
+    /**
+     * How long the first call of a batch waits for others before the batch is executed, in microseconds.
+     * Defaults to 1000
+     */
+    long maxDelayMicros() default 1000;
+
+    class Decorator implements HandlerDecorator {
+        @Override
+        public Handler decorateHandler(Handler base, Class<?> sqlObjectType, Method method) {
+            final Coalesce config = method.getAnnotation(Coalesce.class);
+            checkMethod(config, sqlObjectType, method);
+            final Counter counter = SqlObjectMethods.findCounter(sqlObjectType, method);
+            final ParameterBinder binder = new ParameterBinder(Coalesce.class, method, Collections.singletonList(Valid.class));
+            final List<SqlStatementCustomizer> customizers = SqlObjectMethods.typeCustomizers(sqlObjectType);
+            final Parameter[] parameters = method.getParameters();
+            final Class<?> returnType = method.getReturnType();
+            return (target, args, handle) -> {
+                if (SqlObjectMethods.inTransaction(handle)) {
+                    return base.invoke(target, args, handle);
+                }
+                for (int i = 0; i < parameters.length; i++) {
+                    Valid valid = parameters[i].getAnnotation(Valid.class);
+                    if (valid != null) {
+                        Validation.throwOnFailedValidation(args[i], valid.groups());
+                    }
+                }
+                Coalescer coalescer = handle.getJdbi().getConfig(Coalescers.class)
+                    .get(method, m -> new Coalescer(
+                        handle.getConfig(SqlObjects.class).getSqlLocator().locate(sqlObjectType, method, handle.getConfig()),
+                        binder,
+                        customizers,
+                        counter == null ? null : Counter.Factory.counter(counter),
+                        config));
+                return result(returnType, coalescer.execute(handle, args));
+            };
+        }
+
+        private static void checkMethod(Coalesce config, Class<?> sqlObjectType, Method method) {
+            SqlObjectMethods.checkUpdate(Coalesce.class, sqlObjectType, method);
+            List<Class<?>> returnTypes = Arrays.asList(void.class, int.class, Integer.class, long.class, Long.class, boolean.class, Boolean.class);
+            if (!returnTypes.contains(method.getReturnType())) {
+                throw new IllegalStateException(String.format("@Coalesce method %s.%s must return void, int, long or boolean, not %s",
+                    sqlObjectType.getSimpleName(), method.getName(), method.getReturnType().getSimpleName()));
+            }
+            if (config.maxBatch() < 1 || config.maxDelayMicros() < 0) {
+                throw new IllegalStateException("@Coalesce maxBatch must be positive and maxDelayMicros not negative on " + method);
+            }
+        }
+
+        private static Object result(Class<?> returnType, int count) {
+            if (returnType == int.class || returnType == Integer.class) {
+                return count;
+            }
+            if (returnType == long.class || returnType == Long.class) {
+                return (long) count;
+            }
+            if (returnType == boolean.class || returnType == Boolean.class) {
+                return count > 0 || count == Statement.SUCCESS_NO_INFO;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.extension.HandleSupplier;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.jdbi.v3.core.statement.SqlStatement;
+import org.jdbi.v3.core.statement.Update;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Gathers concurrent calls of one {@link Coalesce} method into batches. There are no background threads: the
+ * first waiting caller leads, it waits for more calls up to the maximum delay or batch size, hands the lead to the
+ * next waiting caller and executes the batch for everybody in it on its own handle, which is not in a transaction.
+ * The other callers don't use their handles, so on-demand SqlObjects don't open one while they wait.
+ */
+final class Coalescer {
+    private final String sql;
+    private final ParameterBinder binder;
+    private final List<SqlStatementCustomizer> customizers;
+    private final CounterCustomizer counter;
+    private final Function<Object[], Object> counterKey;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Request> pending = new ArrayDeque<>();
+    private boolean leaderActive;
+
+    Coalescer(String sql, ParameterBinder binder, List<SqlStatementCustomizer> customizers, CounterCustomizer counter, Coalesce config) {
+        this.sql = sql;
+        this.binder = binder;
+        this.customizers = customizers;
+        this.counter = counter;
+        this.counterKey = counter == null ? null : binder.resolver(counter.getBinding());
+        this.maxBatch = config.maxBatch();
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(config.maxDelayMicros());
+    }
+
+    /**
+     * Executes the statement for the arguments as part of a batch
+     *
+     * @param handle - The caller's handle supplier, asked for a handle only if the caller leads a batch
+     * @return the update count of the arguments' row
+     */
+    int execute(HandleSupplier handle, Object[] args) throws Exception {
+        Request request = new Request(args);
+        boolean lead;
+        synchronized (lock) {
+            pending.add(request);
+            lead = !leaderActive;
+            if (lead) {
+                leaderActive = true;
+            } else if (pending.size() >= maxBatch) {
+                lock.notifyAll();
+            }
+        }
+        if (lead || request.awaitTurn()) {
+            lead(handle);
+        }
+        return request.result();
+    }
+
+    private void lead(HandleSupplier handle) {
+        List<Request> batch = new ArrayList<>();
+        synchronized (lock) {
+            long deadline = System.nanoTime() + maxDelayNanos;
+            long remaining = maxDelayNanos;
+            boolean interrupted = false;
+            while (pending.size() < maxBatch && remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    break;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            while (batch.size() < maxBatch && !pending.isEmpty()) {
+                batch.add(pending.poll());
+            }
+            if (pending.isEmpty()) {
+                leaderActive = false;
+            } else {
+                pending.peek().promote();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        executeBatch(handle, batch);
+    }
+
+    private void executeBatch(HandleSupplier supplier, List<Request> batch) {
+        Handle handle;
+        try {
+            handle = supplier.getHandle();
+        } catch (Throwable e) {
+            batch.forEach(request -> request.complete(0, e));
+            return;
+        }
+        try {
+            int[] counts = handle.inTransaction(h -> {
+                PreparedBatch statement = customize(h.prepareBatch(sql));
+                for (Request request : batch) {
+                    binder.bind(statement, request.args);
+                    statement.add();
+                }
+                int[] result = statement.execute();
+                updateCounters(h, batch);
+                return result;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).complete(counts[i], null);
+            }
+        } catch (Throwable e) {
+            if (batch.size() == 1) {
+                batch.get(0).complete(0, e);
+            } else {
+                executeEach(handle, batch);
+            }
+        }
+    }
+
+    /**
+     * Executes the rows of a failed batch one by one, so that only the callers whose rows fail get an exception
+     */
+    private void executeEach(Handle handle, List<Request> batch) {
+        for (Request request : batch) {
+            try {
+                int count = handle.inTransaction(h -> {
+                    Update statement = customize(h.createUpdate(sql));
+                    binder.bind(statement, request.args);
+                    int result = statement.execute();
+                    updateCounters(h, Collections.singletonList(request));
+                    return result;
+                });
+                request.complete(count, null);
+            } catch (Throwable e) {
+                request.complete(0, e);
+            }
+        }
+    }
+
+    private <S extends SqlStatement<S>> S customize(S statement) throws Exception {
+        for (SqlStatementCustomizer customizer : customizers) {
+            customizer.apply(statement);
+        }
+        return statement;
+    }
+
+    private void updateCounters(Handle handle, List<Request> requests) throws Exception {
+        if (counter == null) {
+            return;
+        }
+        Map<String, Integer> deltas = new HashMap<>();
+        for (Request request : requests) {
+            deltas.merge(String.valueOf(counterKey.apply(request.args)), 1, Integer::sum);
+        }
+        counter.updateCounters(handle, deltas);
+    }
+
+    /**
+     * A call waiting to be executed, or to lead the next batch
+     */
+    private static final class Request {
+        final Object[] args;
+        private boolean done;
+        private boolean promoted;
+        private int count;
+        private Throwable error;
+
+        Request(Object[] args) {
+            this.args = args == null ? new Object[0] : args.clone();
+        }
+
+        synchronized void complete(int count, Throwable error) {
+            this.count = count;
+            this.error = error;
+            this.done = true;
+            notifyAll();
+        }
+
+        synchronized void promote() {
+            promoted = true;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the request is executed or promoted to lead the next batch. Interrupts are deferred,
+         * since every request in the queue must be completed.
+         *
+         * @return true if the caller must lead the next batch
+         */
+        synchronized boolean awaitTurn() {
+            boolean interrupted = false;
+            while (!done && !promoted) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return !done;
+        }
+
+        synchronized int result() throws Exception {
+            if (error instanceof Exception) {
+                throw (Exception) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.config.JdbiConfig;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The {@link Coalescer}s of the {@link Coalesce} methods called on a Jdbi. The copies made for handles share
+ * them, so that calls on different handles are gathered into the same batches.
+ */
+public final class Coalescers implements JdbiConfig<Coalescers> {
+    private final Map<Method, Coalescer> coalescers;
+
+    public Coalescers() {
+        this.coalescers = new ConcurrentHashMap<>();
+    }
+
+    private Coalescers(Coalescers that) {
+        this.coalescers = that.coalescers;
+    }
+
+    Coalescer get(Method method, Function<Method, Coalescer> factory) {
+        return coalescers.computeIfAbsent(method, factory);
+    }
+
+    @Override
+    public Coalescers createCopy() {
+        return new Coalescers(this);
+    }
+}
@@ -0,0 +1,353 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.config.JdbiConfig;
+import org.jdbi.v3.core.transaction.DelegatingTransactionHandler;
+import org.jdbi.v3.core.transaction.TransactionHandler;
+import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retries statements and transactions that fail because of lock contention, with jittered exponential backoff
+ * and a retry budget so that retries can't multiply the load of a hot row:
+ *
+ * <pre>
+ *     jdbi.getConfig(ContentionRetry.class)
+ *         .setMaxRetries(5)
+ *         .setBackoff(5, 500, TimeUnit.MILLISECONDS)
+ *         .setRetryBudget(0.1, 20);
+ *     ContentionRetry.retryTransactions(jdbi);
+ *
+ *     &#64;Counter(table = "users", column = "posts_count", binding = "p.userId", retryOnContention = true)
+ * </pre>
+ *
+ * Lock timeouts are retried where they happen, rolling back to a savepoint inside a transaction. Deadlocks and
+ * serialization failures roll back the whole transaction on most databases, so inside a transaction they are
+ * left to {@link #retryTransactions(Jdbi)}, which runs the transaction callback again. Its callbacks must be safe
+ * to repeat.
+ *
+ * The settings are copied like any Jdbi configuration, the budget and the {@link Metrics} are shared by the copies.
+ */
+public final class ContentionRetry implements JdbiConfig<ContentionRetry> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentionRetry.class);
+
+    /**
+     * What a failure has to be retried with
+     */
+    enum Contention {
+        /**
+         * Not contention, don't retry
+         */
+        NONE,
+        /**
+         * The statement failed, e.g. on a lock timeout, and can be retried in the same transaction
+         */
+        STATEMENT,
+        /**
+         * The transaction failed, e.g. on a deadlock or serialization failure, and has to be retried as a whole
+         */
+        TRANSACTION
+    }
+
+    private int maxRetries = 3;
+    private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(5);
+    private long maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(200);
+    private Budget budget = new Budget(0.1, 10);
+    private final Metrics metrics;
+
+    public ContentionRetry() {
+        this.metrics = new Metrics();
+    }
+
+    private ContentionRetry(ContentionRetry that) {
+        this.maxRetries = that.maxRetries;
+        this.initialBackoffNanos = that.initialBackoffNanos;
+        this.maxBackoffNanos = that.maxBackoffNanos;
+        this.budget = that.budget;
+        this.metrics = that.metrics;
+    }
+
+    /**
+     * Installs a transaction handler on the Jdbi that runs a transaction callback again when the transaction fails
+     * on contention. Nested transactions are not retried, the outermost one is.
+     */
+    public static void retryTransactions(Jdbi jdbi) {
+        jdbi.setTransactionHandler(new TransactionRetrier(jdbi.getTransactionHandler()));
+    }
+
+    /**
+     * Sets how often a statement or transaction is retried. Defaults to 3
+     */
+    public ContentionRetry setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Sets the backoff before the first retry, doubled for each one after it up to the maximum. The actual wait
+     * is a random time up to the backoff. Defaults to 5 and 200 milliseconds
+     */
+    public ContentionRetry setBackoff(long initial, long max, TimeUnit unit) {
+        this.initialBackoffNanos = unit.toNanos(initial);
+        this.maxBackoffNanos = unit.toNanos(max);
+        return this;
+    }
+
+    /**
+     * Limits retries to a share of the calls, on top of a reserve for bursts. Defaults to 10% and 10
+     *
+     * @param ratio - The retries allowed per call
+     * @param reserve - The retries allowed at once
+     */
+    public ContentionRetry setRetryBudget(double ratio, int reserve) {
+        this.budget = new Budget(ratio, reserve);
+        return this;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Runs a statement on the connection, retrying it when it fails on contention that the statement can be
+     * retried for
+     *
+     * @return the result of the statement
+     */
+    <T> T retryStatement(Connection connection, SqlStatement<T> statement) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        budget.deposit();
+        for (int attempt = 0; ; attempt++) {
+            Savepoint savepoint = autoCommit ? null : connection.setSavepoint();
+            try {
+                T result = statement.run();
+                release(connection, savepoint);
+                return result;
+            } catch (SQLException e) {
+                Contention contention = classify(e);
+                if (contention == Contention.NONE || contention == Contention.TRANSACTION && !autoCommit) {
+                    throw e;
+                }
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+                if (!awaitRetry(attempt, e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits before the next attempt
+     *
+     * @return false if the failure should be rethrown instead
+     */
+    private boolean awaitRetry(int attempt, Exception failure) {
+        if (attempt >= maxRetries) {
+            metrics.giveUps.increment();
+            return false;
+        }
+        if (!budget.withdraw()) {
+            metrics.giveUps.increment();
+            metrics.budgetExhausted.increment();
+            return false;
+        }
+        metrics.retries.increment();
+        long backoff = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt, 30));
+        LOGGER.debug("Retrying after contention, attempt {}", attempt + 1, failure);
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void release(Connection connection, Savepoint savepoint) {
+        if (savepoint == null) {
+            return;
+        }
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            // some drivers don't release savepoints, they end with the transaction
+        }
+    }
+
+    /**
+     * @param failure - The failure of a statement or transaction
+     * @return true if the failure is one that {@link ContentionRetry} retries: a lock timeout, deadlock or serialization failure
+     */
+    public static boolean isContention(Throwable failure) {
+        return classify(failure) != Contention.NONE;
+    }
+
+    /**
+     * Finds the kind of contention in the causes of the failure by SQLState and, for MySQL and Oracle, error code
+     */
+    static Contention classify(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (!(t instanceof SQLException)) {
+                continue;
+            }
+            for (SQLException e = (SQLException) t; e != null; e = e.getNextException()) {
+                Contention contention = contentionOf(e);
+                if (contention != Contention.NONE) {
+                    return contention;
+                }
+            }
+        }
+        return Contention.NONE;
+    }
+
+    private static Contention contentionOf(SQLException e) {
+        String state = e.getSQLState() == null ? "" : e.getSQLState();
+        if ("40001".equals(state) || "40P01".equals(state) || "40XL1".equals(state) || "40XL2".equals(state)) {
+            // serialization failure or deadlock (40001), PostgreSQL deadlock (40P01), Derby lock timeout and
+            // deadlock (40XL1, 40XL2). Not the rest of class 40: after 40003 the statement may have completed.
+            return Contention.TRANSACTION;
+        }
+        if ("41000".equals(state) || "55P03".equals(state)) {
+            // lock wait timeout (MySQL 41000), lock not available (PostgreSQL 55P03)
+            return Contention.STATEMENT;
+        }
+        if ("HY000".equals(state) && e.getErrorCode() == 1213) {
+            // MySQL deadlock (ER_LOCK_DEADLOCK), when the driver does not map it to 40001
+            return Contention.TRANSACTION;
+        }
+        if (("HY000".equals(state) || "41000".equals(state)) && e.getErrorCode() == 1205) {
+            // MySQL lock wait timeout (ER_LOCK_WAIT_TIMEOUT), which rolls back only the statement by default
+            return Contention.STATEMENT;
+        }
+        if ("61000".equals(state) && e.getErrorCode() == 60 || "72000".equals(state) && e.getErrorCode() == 8177) {
+            // Oracle deadlock (ORA-00060) and serialization failure (ORA-08177)
+            return Contention.TRANSACTION;
+        }
+        if ("61000".equals(state) && (e.getErrorCode() == 54 || e.getErrorCode() == 30006)) {
+            // Oracle resource busy (ORA-00054, ORA-30006)
+            return Contention.STATEMENT;
+        }
+        return Contention.NONE;
+    }
+
+    @Override
+    public ContentionRetry createCopy() {
+        return new ContentionRetry(this);
+    }
+
+    @FunctionalInterface
+    interface SqlStatement<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Counts the retries and the failures that were not retried
+     */
+    public static final class Metrics {
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder giveUps = new LongAdder();
+        private final LongAdder budgetExhausted = new LongAdder();
+
+        /**
+         * @return the number of retries
+         */
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        /**
+         * @return the number of contention failures that were rethrown after retrying as often as allowed
+         */
+        public long getGiveUps() {
+            return giveUps.sum();
+        }
+
+        /**
+         * @return the number of give ups because the retry budget was spent
+         */
+        public long getBudgetExhausted() {
+            return budgetExhausted.sum();
+        }
+    }
+
+    /**
+     * A token bucket that calls fill and retries empty
+     */
+    private static final class Budget {
+        private final double ratio;
+        private final double reserve;
+        private double balance;
+
+        Budget(double ratio, int reserve) {
+            this.ratio = ratio;
+            this.reserve = reserve;
+            this.balance = reserve;
+        }
+
+        synchronized void deposit() {
+            balance = Math.min(reserve, balance + ratio);
+        }
+
+        synchronized boolean withdraw() {
+            if (balance < 1) {
+                return false;
+            }
+            balance--;
+            return true;
+        }
+    }
+
+    /**
+     * Runs transaction callbacks again when the transaction fails on contention
+     */
+    private static final class TransactionRetrier extends DelegatingTransactionHandler {
+        TransactionRetrier(TransactionHandler delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public <R, X extends Exception> R inTransaction(Handle handle, HandleCallback<R, X> callback) throws X {
+            return retry(handle, () -> super.inTransaction(handle, callback));
+        }
+
+        @Override
+        public <R, X extends Exception> R inTransaction(Handle handle, TransactionIsolationLevel level,
+                                                        HandleCallback<R, X> callback) throws X {
+            return retry(handle, () -> super.inTransaction(handle, level, callback));
+        }
+
+        private <R, X extends Exception> R retry(Handle handle, Transaction<R, X> transaction) throws X {
+            if (handle.isInTransaction()) {
+                return transaction.run();
+            }
+            ContentionRetry config = handle.getConfig(ContentionRetry.class);
+            config.budget.deposit();
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return transaction.run();
+                } catch (Exception e) {
+                    if (classify(e) == Contention.NONE || !config.awaitRetry(attempt, e)) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Transaction<R, X extends Exception> {
+        R run() throws X;
+    }
+}
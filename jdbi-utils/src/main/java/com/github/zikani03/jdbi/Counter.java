@@ -46,26 +46,55 @@ public @interface Counter {
      */
     boolean decrementing() default false;
 
+    /**
+     * The table of a {@link CounterRollup} that also counts the changes per time bucket.
+     * Defaults to none
+     */
+    String rollupTable() default "";
+
+    /**
+     * Whether the counter update is retried when it fails on lock contention, as configured
+     * by {@link ContentionRetry}. Defaults to false
+     */
+    boolean retryOnContention() default false;
+
+    /**
+     * Whether the new value of the counter is read with the update, with <code>UPDATE ... RETURNING</code> or the
+     * database's equivalent. It is passed to the {@link CounterValue} parameter of the method. Defaults to false
+     */
+    boolean returning() default false;
+
+    /**
+     * Builds the {@link CounterCustomizer} once when the SqlObject is created and attaches
+     * the same instance to each statement
+     */
     class Factory implements SqlStatementCustomizerFactory {
 
         @Override
         public SqlStatementCustomizer createForMethod(Annotation annotation, Class<?> sqlObjectType, Method method) {
-            return counter((Counter) annotation);
+            final CounterCustomizer customizer = counter((Counter) annotation);
+            return stmt -> stmt.addCustomizer(customizer);
         }
 
+        /**
+         * @deprecated {@link Counter} only targets types and methods, so this is never called
+         */
+        @Deprecated
         @Override
         public SqlStatementParameterCustomizer createForParameter(Annotation annotation, Class<?> sqlObjectType, Method method, Parameter param, int index, Type parameterType) {
-            return (stmt, arg) -> counter((Counter) annotation);
+            final CounterCustomizer customizer = counter((Counter) annotation);
+            return (stmt, arg) -> stmt.addCustomizer(customizer);
         }
 
-        private SqlStatementCustomizer counter(Counter config) {
-            final String table = config.table(),
-                    column = config.column(),
-                    binding = config.binding(),
-                    primaryKey = config.primaryKey();
-            final boolean decrementing = config.decrementing();
-            return (stmt) -> stmt.addCustomizer(
-                new CounterCustomizer(table, column, binding, primaryKey, decrementing));
+        static CounterCustomizer counter(Counter config) {
+            return new CounterCustomizer(config.table(),
+                                         config.column(),
+                                         config.binding(),
+                                         config.primaryKey(),
+                                         config.decrementing(),
+                                         config.rollupTable().isEmpty() ? null : config.rollupTable(),
+                                         config.retryOnContention(),
+                                         config.returning());
         }
     }
-}
\ No newline at end of file
+}
@@ -1,24 +1,83 @@
 package com.github.zikani03.jdbi;
 
+import org.jdbi.v3.core.Handle;
 import org.jdbi.v3.core.argument.Argument;
 import org.jdbi.v3.core.statement.StatementContext;
 import org.jdbi.v3.core.statement.StatementCustomizer;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.LongConsumer;
 
 /**
  * CounterCustomizer - Executes a statement to update a counter field
+ *
+ * Instances are immutable and can be shared between statements and threads.
  */
 public class CounterCustomizer implements StatementCustomizer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CounterCustomizer.class);
+
+    /**
+     * The statement attribute holding the {@link CounterValue} consumer
+     */
+    static final String VALUE_CONSUMER = CounterValue.class.getName();
+
+    /**
+     * How the new value of the counter is read, by database
+     */
+    enum Returning {
+        /**
+         * <code>UPDATE ... RETURNING</code>, PostgreSQL, SQLite and Firebird
+         */
+        RETURNING,
+        /**
+         * <code>SELECT ... FROM FINAL TABLE (UPDATE ...)</code>, DB2 and H2
+         */
+        FINAL_TABLE,
+        /**
+         * <code>UPDATE ... OUTPUT inserted.column</code>, SQL Server
+         */
+        OUTPUT,
+        /**
+         * A <code>SELECT</code> after the update in the same transaction, for other databases
+         */
+        SELECT;
+
+        static Returning of(String databaseProductName) {
+            String product = databaseProductName.toLowerCase(Locale.ROOT);
+            if (product.contains("postgres") || product.contains("sqlite") || product.contains("firebird")) {
+                return RETURNING;
+            }
+            if (product.startsWith("db2") || product.equals("h2")) {
+                return FINAL_TABLE;
+            }
+            if (product.contains("sql server")) {
+                return OUTPUT;
+            }
+            return SELECT;
+        }
+    }
+
     private final String table;
     private final String column;
     private final String binding;
     private final String primaryKey;
     private final String query;
+    private final String deltaQuery;
     private final boolean isDecrementing;
+    private final String rollupTable;
+    private final boolean retryOnContention;
+    private final boolean returning;
+    private final Map<Returning, String> returningQueries;
 
     /**
      * Template for incrementing counter query
@@ -30,6 +89,21 @@ public class CounterCustomizer implements StatementCustomizer {
      */
     private static final String QUERY_TEMPLATE_DECR = "UPDATE %s SET %s = %s - 1 WHERE %s =  ?";
 
+    /**
+     * Template for updating a counter on SQL Server and reading its new value
+     */
+    private static final String QUERY_TEMPLATE_OUTPUT = "UPDATE %s SET %s = %s %s 1 OUTPUT inserted.%s WHERE %s =  ?";
+
+    /**
+     * Template for reading a counter after updating it
+     */
+    private static final String QUERY_TEMPLATE_SELECT = "SELECT %s FROM %s WHERE %s =  ?";
+
+    /**
+     * Template for changing a counter by several steps at once
+     */
+    private static final String QUERY_TEMPLATE_DELTA = "UPDATE %s SET %s = %s %s ? WHERE %s =  ?";
+
     /**
      *
      * @param table - The table containing the counter field
@@ -38,13 +112,9 @@ public class CounterCustomizer implements StatementCustomizer {
      * @param primaryKey - the name of the primary key column to use for finding the record to update
      */
     public CounterCustomizer(String table, String column, String binding, String primaryKey) {
-        this.table = table;
-        this.column = column;
-        this.binding = binding;
-        this.primaryKey = primaryKey;
-        isDecrementing = false;
-        this.query = createQuery();
+        this(table, column, binding, primaryKey, false);
     }
+
     /**
      *
      * @param table - The table containing the counter field
@@ -54,12 +124,65 @@ public class CounterCustomizer implements StatementCustomizer {
      * @param isDecrementing - If the counter should be a decrementing counter
      */
     public CounterCustomizer(String table, String column, String binding, String primaryKey, boolean isDecrementing) {
+        this(table, column, binding, primaryKey, isDecrementing, null);
+    }
+
+    /**
+     *
+     * @param table - The table containing the counter field
+     * @param column - The name of the counter field column. Should be and integer type
+     * @param binding - The name of the binding to get the value from. Used for finding the record to update
+     * @param primaryKey - the name of the primary key column to use for finding the record to update
+     * @param isDecrementing - If the counter should be a decrementing counter
+     * @param rollupTable - The table of the {@link CounterRollup} that also counts the changes per time bucket, or null
+     */
+    public CounterCustomizer(String table, String column, String binding, String primaryKey, boolean isDecrementing, String rollupTable) {
+        this(table, column, binding, primaryKey, isDecrementing, rollupTable, false);
+    }
+
+    /**
+     *
+     * @param table - The table containing the counter field
+     * @param column - The name of the counter field column. Should be and integer type
+     * @param binding - The name of the binding to get the value from. Used for finding the record to update
+     * @param primaryKey - the name of the primary key column to use for finding the record to update
+     * @param isDecrementing - If the counter should be a decrementing counter
+     * @param rollupTable - The table of the {@link CounterRollup} that also counts the changes per time bucket, or null
+     * @param retryOnContention - If the update should be retried when it fails on lock contention
+     */
+    public CounterCustomizer(String table, String column, String binding, String primaryKey, boolean isDecrementing, String rollupTable,
+                             boolean retryOnContention) {
+        this(table, column, binding, primaryKey, isDecrementing, rollupTable, retryOnContention, false);
+    }
+
+    /**
+     *
+     * @param table - The table containing the counter field
+     * @param column - The name of the counter field column. Should be and integer type
+     * @param binding - The name of the binding to get the value from. Used for finding the record to update
+     * @param primaryKey - the name of the primary key column to use for finding the record to update
+     * @param isDecrementing - If the counter should be a decrementing counter
+     * @param rollupTable - The table of the {@link CounterRollup} that also counts the changes per time bucket, or null
+     * @param retryOnContention - If the update should be retried when it fails on lock contention
+     * @param returning - If the new value of the counter should be read with the update, see {@link #getValue(StatementContext)}
+     */
+    public CounterCustomizer(String table, String column, String binding, String primaryKey, boolean isDecrementing, String rollupTable,
+                             boolean retryOnContention, boolean returning) {
         this.table = table;
         this.column = column;
         this.binding = binding;
         this.primaryKey = primaryKey;
         this.isDecrementing = isDecrementing;
+        this.rollupTable = rollupTable;
+        this.retryOnContention = retryOnContention;
+        this.returning = returning;
         this.query = createQuery();
+        this.deltaQuery = String.format(QUERY_TEMPLATE_DELTA, table, column, column, this.isDecrementing ? "-" : "+", primaryKey);
+        this.returningQueries = new EnumMap<>(Returning.class);
+        returningQueries.put(Returning.RETURNING, query + " RETURNING " + column);
+        returningQueries.put(Returning.FINAL_TABLE, "SELECT " + column + " FROM FINAL TABLE (" + query + ")");
+        returningQueries.put(Returning.OUTPUT, String.format(QUERY_TEMPLATE_OUTPUT, table, column, column, isDecrementing ? "-" : "+", column, primaryKey));
+        returningQueries.put(Returning.SELECT, String.format(QUERY_TEMPLATE_SELECT, column, table, primaryKey));
     }
 
     /**
@@ -76,21 +199,161 @@ public class CounterCustomizer implements StatementCustomizer {
                              primaryKey);
     }
 
+    /**
+     * @return the name of the binding to get the value from
+     */
+    public String getBinding() {
+        return binding;
+    }
+
+    /**
+     * @return the name of the counter in rollup tables, <code>table.column</code>
+     */
+    public String getCounterName() {
+        return table + "." + column;
+    }
+
+    /**
+     * @return the new value of the counter after the statement executed, if the customizer reads it and a record was updated
+     */
+    public OptionalLong getValue(StatementContext ctx) {
+        Object value = ctx.getAttribute(getCounterName());
+        return value instanceof Long ? OptionalLong.of((Long) value) : OptionalLong.empty();
+    }
+
+    /**
+     * @return the statement that reads the new value of the counter, which also updates it unless it is a <code>SELECT</code>
+     */
+    String getReturningQuery(Returning returning) {
+        return returningQueries.get(returning);
+    }
+
+    /**
+     * Applies the counter updates of several executed statements at once, with one update per record.
+     *
+     * @param handle - The handle to update the counters with
+     * @param deltas - The number of executed statements per binding value
+     * @throws SQLException if the update fails
+     */
+    public void updateCounters(Handle handle, Map<String, Integer> deltas) throws SQLException {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        update(handle.getConnection(), handle.getConfig(ContentionRetry.class), () -> {
+            try (PreparedStatement sql = handle.getConnection().prepareStatement(deltaQuery)) {
+                for (Map.Entry<String, Integer> delta : deltas.entrySet()) {
+                    sql.setInt(1, delta.getValue());
+                    sql.setString(2, delta.getKey());
+                    sql.addBatch();
+                }
+                int[] counts = sql.executeBatch();
+                LOGGER.debug("Executed SQL: {} for {} records", deltaQuery, deltas.size());
+                return counts;
+            }
+        });
+        if (rollupTable != null) {
+            CounterRollup rollup = handle.getConfig(CounterRollups.class).get(rollupTable);
+            deltas.forEach((key, delta) -> rollup.record(getCounterName(), key, isDecrementing ? -delta : delta));
+        }
+    }
+
+    private <T> T update(Connection connection, ContentionRetry retry, ContentionRetry.SqlStatement<T> update) throws SQLException {
+        return retryOnContention ? retry.retryStatement(connection, update) : update.run();
+    }
+
+    /**
+     * Updates the counter of a record and reads its new value in one statement
+     *
+     * @return the new value, or null if no record was updated
+     */
+    private Long updateReturning(Connection connection, Returning form, String key) throws SQLException {
+        String returningQuery = getReturningQuery(form);
+        try (PreparedStatement sql = connection.prepareStatement(returningQuery)) {
+            sql.setString(1, key);
+            try (ResultSet rs = sql.executeQuery()) {
+                LOGGER.debug("Executed SQL: {}", returningQuery);
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Updates the counter of a record and reads its new value with a <code>SELECT</code> in the same transaction,
+     * so the value is not changed by other sessions in between. On an auto-commit connection both run in a
+     * transaction of their own, which is retried as a whole; inside a transaction only the update is retried.
+     *
+     * @return the new value, or null if no record was updated
+     */
+    private Long updateThenSelect(Connection connection, ContentionRetry retry, String key) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            boolean updated = update(connection, retry, () -> updateCounter(connection, key)) > 0;
+            return updated ? selectCounter(connection, key) : null;
+        }
+        return update(connection, retry, () -> {
+            connection.setAutoCommit(false);
+            try {
+                Long value = updateCounter(connection, key) > 0 ? selectCounter(connection, key) : null;
+                connection.commit();
+                return value;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    private int updateCounter(Connection connection, String key) throws SQLException {
+        try (PreparedStatement sql = connection.prepareStatement(query)) {
+            sql.setString(1, key);
+            int updated = sql.executeUpdate();
+            LOGGER.debug("Executed SQL: {}", query);
+            return updated;
+        }
+    }
+
+    private Long selectCounter(Connection connection, String key) throws SQLException {
+        String selectQuery = getReturningQuery(Returning.SELECT);
+        try (PreparedStatement sql = connection.prepareStatement(selectQuery)) {
+            sql.setString(1, key);
+            try (ResultSet rs = sql.executeQuery()) {
+                LOGGER.debug("Executed SQL: {}", selectQuery);
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
     @Override
     public void afterExecution(PreparedStatement stmt, StatementContext ctx) throws SQLException {
         Optional<Argument> bindingVal = ctx.getBinding().findForName(binding, ctx);
 
         if (! bindingVal.isPresent()) {
-            LoggerFactory.getLogger(getClass()).warn("Missing binding '{}'. Cannot update counter", binding);
+            LOGGER.warn("Missing binding '{}'. Cannot update counter", binding);
             return;
         }
 
-        try (PreparedStatement sql = ctx.getConnection().prepareStatement(query)) {
-            sql.setString(1, String.valueOf(bindingVal.get()));
-            sql.execute();
-            LoggerFactory.getLogger(getClass()).debug("Executed SQL: {}", query);
-        } catch (SQLException e) {
-            throw e;
+        String key = String.valueOf(bindingVal.get());
+        Connection connection = ctx.getConnection();
+        ContentionRetry retry = ctx.getConfig(ContentionRetry.class);
+        Long value = null;
+        if (!returning) {
+            update(connection, retry, () -> updateCounter(connection, key));
+        } else {
+            Returning form = Returning.of(connection.getMetaData().getDatabaseProductName());
+            value = form == Returning.SELECT
+                ? updateThenSelect(connection, retry, key)
+                : update(connection, retry, () -> updateReturning(connection, form, key));
+        }
+        if (value != null) {
+            ctx.define(getCounterName(), value);
+            Object consumer = ctx.getAttribute(VALUE_CONSUMER);
+            if (consumer instanceof LongConsumer) {
+                ((LongConsumer) consumer).accept(value);
+            }
+        }
+        if (rollupTable != null) {
+            ctx.getConfig(CounterRollups.class).get(rollupTable).record(getCounterName(), key, isDecrementing ? -1 : 1);
         }
     }
 }
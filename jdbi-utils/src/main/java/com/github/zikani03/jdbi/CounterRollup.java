@@ -0,0 +1,331 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.PreparedBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.UnsupportedTemporalTypeException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counts the changes of {@link Counter}s per time bucket, e.g. posts per user per minute and per hour, in a rollup
+ * table with the columns:
+ *
+ * <pre>
+ *     create table post_activity(
+ *         counter_name varchar(100), counter_key varchar(100), granularity varchar(10),
+ *         bucket_start timestamp, bucket_count bigint,
+ *         primary key (counter_name, counter_key, granularity, bucket_start));
+ * </pre>
+ *
+ * where <code>counter_name</code> is the counter's <code>table.column</code> and <code>granularity</code> the name
+ * of the <code>ChronoUnit</code>. Changes are added up in memory and written in one batch by a daemon thread of the
+ * rollup, every flush interval and as soon as too many buckets are pending, so the statements that count never wait
+ * for the rollup table or a second connection. Call {@link #close()} before shutting down.
+ *
+ * <pre>
+ *     CounterRollup.create(jdbi, "post_activity")
+ *         .setGranularities(ChronoUnit.MINUTES, ChronoUnit.HOURS)
+ *         .setFlushInterval(5, TimeUnit.SECONDS);
+ *
+ *     &#64;Counter(table = "users", column = "posts_count", binding = "p.userId", rollupTable = "post_activity")
+ * </pre>
+ *
+ * The rollup is eventually consistent: pending changes are lost if the process dies, and changes of statements
+ * whose transaction is rolled back are still counted.
+ */
+public final class CounterRollup implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CounterRollup.class);
+
+    private static final String UPDATE_TEMPLATE = "UPDATE %s SET bucket_count = bucket_count + ? "
+        + "WHERE counter_name = ? AND counter_key = ? AND granularity = ? AND bucket_start = ?";
+
+    private static final String SELECT_TEMPLATE = "SELECT 1 FROM %s "
+        + "WHERE counter_name = ? AND counter_key = ? AND granularity = ? AND bucket_start = ?";
+
+    private static final String INSERT_TEMPLATE = "INSERT INTO %s(bucket_count, counter_name, counter_key, granularity, bucket_start) "
+        + "VALUES (?, ?, ?, ?, ?)";
+
+    private final Jdbi jdbi;
+    private final String table;
+    private final String update;
+    private final String insert;
+    private final String select;
+    private volatile List<ChronoUnit> granularities = Arrays.asList(ChronoUnit.MINUTES, ChronoUnit.HOURS);
+    private volatile Clock clock = Clock.systemUTC();
+    private volatile long flushIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+    private volatile int maxPendingBuckets = 10_000;
+
+    private final Object lock = new Object();
+    private final ReentrantLock flushing = new ReentrantLock();
+    private Map<Bucket, long[]> pending = new HashMap<>();
+    private boolean flushRequested;
+
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> scheduledFlush;
+
+    private CounterRollup(Jdbi jdbi, String table) {
+        this.jdbi = jdbi;
+        this.table = table;
+        // NOTE: Like the counter statements these are built by interpolation, the table name must be trusted
+        this.update = String.format(UPDATE_TEMPLATE, table);
+        this.insert = String.format(INSERT_TEMPLATE, table);
+        this.select = String.format(SELECT_TEMPLATE, table);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "counter-rollup-" + table);
+            thread.setDaemon(true);
+            return thread;
+        });
+        schedule();
+    }
+
+    /**
+     * Creates the rollup of the table and registers it with the Jdbi, for the counters naming it as their
+     * <code>rollupTable</code>
+     *
+     * @param jdbi - The Jdbi the counters run on and the buckets are written with
+     * @param table - The rollup table
+     * @throws IllegalStateException if a rollup of the table was already created for the Jdbi and not closed
+     */
+    public static CounterRollup create(Jdbi jdbi, String table) {
+        CounterRollup rollup = new CounterRollup(jdbi, table);
+        try {
+            jdbi.getConfig(CounterRollups.class).register(rollup);
+        } catch (IllegalStateException e) {
+            rollup.scheduler.shutdownNow();
+            throw e;
+        }
+        return rollup;
+    }
+
+    /**
+     * Sets the sizes of the buckets, which must divide a day. Defaults to minutes and hours
+     */
+    public CounterRollup setGranularities(ChronoUnit... granularities) {
+        for (ChronoUnit unit : granularities) {
+            try {
+                Instant.EPOCH.truncatedTo(unit);
+            } catch (UnsupportedTemporalTypeException e) {
+                throw new IllegalArgumentException("Cannot roll counters up by " + unit, e);
+            }
+        }
+        this.granularities = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(granularities)));
+        return this;
+    }
+
+    /**
+     * Sets how long changes are added up before they are written. Defaults to 1 second
+     */
+    public CounterRollup setFlushInterval(long interval, TimeUnit unit) {
+        this.flushIntervalNanos = unit.toNanos(interval);
+        schedule();
+        return this;
+    }
+
+    private synchronized void schedule() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        if (!scheduler.isShutdown()) {
+            scheduledFlush = scheduler.scheduleWithFixedDelay(this::flushInBackground,
+                flushIntervalNanos, flushIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Sets how many buckets can be pending before they are written. Defaults to 10000
+     */
+    public CounterRollup setMaxPendingBuckets(int maxPendingBuckets) {
+        this.maxPendingBuckets = maxPendingBuckets;
+        return this;
+    }
+
+    /**
+     * Sets the clock the buckets are taken from. Defaults to the UTC system clock
+     */
+    public CounterRollup setClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock);
+        return this;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public List<ChronoUnit> getGranularities() {
+        return granularities;
+    }
+
+    /**
+     * Adds a change of a counter to its current buckets, and has the pending buckets written if there are too many
+     *
+     * @param counter - The counter's name
+     * @param key - The key of the counted record
+     * @param delta - The change
+     */
+    void record(String counter, String key, long delta) {
+        Instant now = clock.instant();
+        boolean full;
+        synchronized (lock) {
+            for (ChronoUnit unit : granularities) {
+                pending.computeIfAbsent(new Bucket(counter, key, unit, now.truncatedTo(unit)), b -> new long[1])[0] += delta;
+            }
+            full = pending.size() >= maxPendingBuckets && !flushRequested;
+            if (full) {
+                flushRequested = true;
+            }
+        }
+        if (full) {
+            try {
+                scheduler.execute(this::flushInBackground);
+            } catch (RejectedExecutionException e) {
+                // closed, the buckets are written by close()
+            }
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not write the buckets of {}, will retry on the next flush", table, e);
+        }
+    }
+
+    /**
+     * Writes the pending buckets. If that fails they are kept for the next flush.
+     */
+    public void flush() {
+        flushing.lock();
+        try {
+            flushPending();
+        } finally {
+            flushing.unlock();
+        }
+    }
+
+    private void flushPending() {
+        Map<Bucket, long[]> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new HashMap<>();
+            flushRequested = false;
+        }
+        batch.values().removeIf(delta -> delta[0] == 0);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbi.useTransaction(h -> write(h, batch));
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                batch.forEach((bucket, delta) -> pending.computeIfAbsent(bucket, b -> new long[1])[0] += delta[0]);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops the background flushes and writes the pending buckets
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            scheduler.shutdown();
+        }
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    boolean isClosed() {
+        return scheduler.isShutdown();
+    }
+
+    /**
+     * Adds the deltas to the existing buckets and inserts the missing ones. Buckets whose update count the driver
+     * does not report, e.g. <code>Statement.SUCCESS_NO_INFO</code>, are looked up to see if the update found them.
+     */
+    private void write(Handle handle, Map<Bucket, long[]> batch) {
+        List<Map.Entry<Bucket, long[]>> entries = new ArrayList<>(batch.entrySet());
+        PreparedBatch updates = handle.prepareBatch(update);
+        for (Map.Entry<Bucket, long[]> entry : entries) {
+            bind(updates, entry).add();
+        }
+        int[] counts = updates.execute();
+        PreparedBatch inserts = handle.prepareBatch(insert);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0 || counts[i] < 0 && !exists(handle, entries.get(i).getKey())) {
+                bind(inserts, entries.get(i)).add();
+            }
+        }
+        if (inserts.size() > 0) {
+            inserts.execute();
+        }
+        LOGGER.debug("Wrote {} buckets to {}", entries.size(), table);
+    }
+
+    private boolean exists(Handle handle, Bucket bucket) {
+        return handle.createQuery(select)
+            .bind(0, bucket.counter)
+            .bind(1, bucket.key)
+            .bind(2, bucket.granularity.name())
+            .bind(3, Timestamp.from(bucket.start))
+            .mapTo(int.class)
+            .findFirst()
+            .isPresent();
+    }
+
+    private static PreparedBatch bind(PreparedBatch batch, Map.Entry<Bucket, long[]> entry) {
+        Bucket bucket = entry.getKey();
+        return batch.bind(0, entry.getValue()[0])
+            .bind(1, bucket.counter)
+            .bind(2, bucket.key)
+            .bind(3, bucket.granularity.name())
+            .bind(4, Timestamp.from(bucket.start));
+    }
+
+    private static final class Bucket {
+        final String counter;
+        final String key;
+        final ChronoUnit granularity;
+        final Instant start;
+
+        Bucket(String counter, String key, ChronoUnit granularity, Instant start) {
+            this.counter = counter;
+            this.key = key;
+            this.granularity = granularity;
+            this.start = start;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Bucket)) {
+                return false;
+            }
+            Bucket that = (Bucket) o;
+            return counter.equals(that.counter) && key.equals(that.key)
+                && granularity == that.granularity && start.equals(that.start);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(counter, key, granularity, start);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.config.JdbiConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link CounterRollup}s created for a Jdbi, by table. The copies made for handles and statements share the
+ * registrations, so that rollups created after a handle was opened are found by its statements too.
+ */
+public final class CounterRollups implements JdbiConfig<CounterRollups> {
+    private final Map<String, CounterRollup> rollups;
+
+    public CounterRollups() {
+        this.rollups = new ConcurrentHashMap<>();
+    }
+
+    private CounterRollups(CounterRollups that) {
+        this.rollups = that.rollups;
+    }
+
+    /**
+     * @throws IllegalStateException if a rollup of the same table is registered and was not closed
+     */
+    void register(CounterRollup rollup) {
+        rollups.compute(rollup.getTable(), (table, existing) -> {
+            if (existing != null && !existing.isClosed()) {
+                throw new IllegalStateException("A CounterRollup was already created for the table " + table + ", close it first");
+            }
+            return rollup;
+        });
+    }
+
+    /**
+     * @return the rollup of the table
+     * @throws IllegalStateException if no rollup was created for the table
+     */
+    public CounterRollup get(String table) {
+        CounterRollup rollup = rollups.get(table);
+        if (rollup == null) {
+            throw new IllegalStateException("No CounterRollup was created for the table " + table);
+        }
+        return rollup;
+    }
+
+    @Override
+    public CounterRollups createCopy() {
+        return new CounterRollups(this);
+    }
+}
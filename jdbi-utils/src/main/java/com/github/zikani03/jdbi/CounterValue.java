@@ -0,0 +1,33 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizerFactory;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizingAnnotation;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementParameterCustomizer;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.function.LongConsumer;
+
+/**
+ * Marks the <code>LongConsumer</code> parameter of a method with <code>@Counter(returning = true)</code> that
+ * receives the new value of the counter. It is not called if no record was updated.
+ */
+@Target({ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlStatementCustomizingAnnotation(CounterValue.Factory.class)
+@Documented
+public @interface CounterValue {
+
+    class Factory implements SqlStatementCustomizerFactory {
+        @Override
+        public SqlStatementParameterCustomizer createForParameter(Annotation annotation, Class<?> sqlObjectType, Method method, Parameter param, int index, Type paramType) {
+            if (param.getType() != LongConsumer.class) {
+                throw new IllegalStateException(String.format("@CounterValue parameter %s of %s must be a LongConsumer",
+                    param.getName(), method));
+            }
+            return (q, consumer) -> q.define(CounterCustomizer.VALUE_CONSUMER, consumer);
+        }
+    }
+}
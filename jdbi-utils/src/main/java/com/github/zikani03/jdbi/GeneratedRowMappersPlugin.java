@@ -0,0 +1,77 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.spi.JdbiPlugin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Registers the row mappers generated by the <code>RowMapperGeneratorProcessor</code> from the
+ * useclasspathsql-checker module. Only the mappers listed in the processor's
+ * <code>META-INF/jdbi-utils/generated-row-mappers</code> files are registered, other row mappers on the class path
+ * are left alone.
+ *
+ * The plugin is not registered with the <code>ServiceLoader</code>, so it must be installed explicitly:
+ *
+ * <pre>
+ *     jdbi.installPlugin(new GeneratedRowMappersPlugin());
+ * </pre>
+ */
+public class GeneratedRowMappersPlugin implements JdbiPlugin {
+    static final String INDEX_FILE = "META-INF/jdbi-utils/generated-row-mappers";
+
+    private final ClassLoader classLoader;
+
+    public GeneratedRowMappersPlugin() {
+        this(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     *
+     * @param classLoader - The class loader to look up the generated mappers with
+     */
+    public GeneratedRowMappersPlugin(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public void customizeJdbi(Jdbi jdbi) {
+        for (String name : generatedMappers()) {
+            try {
+                Class<? extends RowMapper> type = Class.forName(name, true, classLoader).asSubclass(RowMapper.class);
+                jdbi.registerRowMapper(type.getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw new IllegalStateException("Could not register the generated row mapper " + name, e);
+            }
+        }
+    }
+
+    private Set<String> generatedMappers() {
+        Set<String> names = new LinkedHashSet<>();
+        try {
+            Enumeration<URL> indexes = classLoader.getResources(INDEX_FILE);
+            while (indexes.hasMoreElements()) {
+                URL index = indexes.nextElement();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.trim().isEmpty()) {
+                            names.add(line.trim());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + INDEX_FILE, e);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.Handler;
+import org.jdbi.v3.sqlobject.HandlerDecorator;
+import org.jdbi.v3.sqlobject.SqlMethodDecoratingAnnotation;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+
+/**
+ * Discards the results cached by {@link CachedQuery} methods that read any of the given tables
+ * when the annotated SqlObject method runs.
+ *
+ * The cache is invalidated both before and after the method, so a query that was running at the same time
+ * does not cache a result from before the change. Changes committed later by an enclosing transaction may still
+ * be served stale until the {@link CachedQuery#ttl()} passes.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlMethodDecoratingAnnotation(InvalidatesCache.Decorator.class)
+@Documented
+public @interface InvalidatesCache {
+
+    /**
+     * The tables the method modifies
+     */
+    String[] value();
+
+    class Decorator implements HandlerDecorator {
+        @Override
+        public Handler decorateHandler(Handler base, Class<?> sqlObjectType, Method method) {
+            final String[] tables = method.getAnnotation(InvalidatesCache.class).value();
+            return (target, args, handle) -> {
+                QueryCache cache = QueryCache.of(handle.getJdbi());
+                cache.invalidate(tables);
+                try {
+                    return base.invoke(target, args, handle);
+                } finally {
+                    cache.invalidate(tables);
+                }
+            };
+        }
+    }
+}
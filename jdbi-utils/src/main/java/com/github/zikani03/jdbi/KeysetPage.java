@@ -0,0 +1,227 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.collector.CollectorFactory;
+import org.jdbi.v3.core.generic.GenericTypes;
+import org.jdbi.v3.core.mapper.NoSuchMapperException;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizer;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizerFactory;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizingAnnotation;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.UseRowMapper;
+import org.jdbi.v3.sqlobject.statement.UseRowReducer;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Pages through the results of an SqlObject query method by the values of the {@link #orderBy()} columns instead of
+ * with <code>OFFSET</code>, so every page costs the same however deep it is. The method returns a {@link Page}
+ * and takes the continuation token of the previous page in a {@link PageToken} parameter:
+ *
+ * <pre>
+ *     &#64;SqlQuery("SELECT id, content FROM posts WHERE user_id = :userId")
+ *     &#64;KeysetPage(orderBy = "id", size = 20)
+ *     Page&lt;Post&gt; findByUser(&#64;Bind("userId") long userId, &#64;PageToken String token);
+ * </pre>
+ *
+ * The rendered SQL, from the annotation or the classpath, is wrapped in a query that seeks past the last key of the
+ * previous page, orders by the columns and limits the results. The other statement customizers of the SqlObject
+ * and the method apply as usual. The SQL must select the {@link #orderBy()} columns, which must identify a row
+ * uniquely and not be null, and must not have its own top-level <code>ORDER BY</code> or <code>LIMIT</code>.
+ * An index on the columns keeps the seek cheap.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlStatementCustomizingAnnotation(KeysetPage.Factory.class)
+@Documented
+public @interface KeysetPage {
+
+    /**
+     * The columns of the query's results to page by, in order. Defaults to "id"
+     */
+    String[] orderBy() default "id";
+
+    /**
+     * Whether to page in descending order. Defaults to false
+     */
+    boolean descending() default false;
+
+    /**
+     * The maximum number of results in a page. Defaults to 50
+     */
+    int size() default 50;
+
+    class Factory implements SqlStatementCustomizerFactory {
+        @Override
+        public SqlStatementCustomizer createForMethod(Annotation annotation, Class<?> sqlObjectType, Method method) {
+            final KeysetPage config = (KeysetPage) annotation;
+            final Type elementType = checkMethod(config, sqlObjectType, method);
+            checkToken(sqlObjectType, method);
+            return stmt -> {
+                stmt.registerRowMapper(KeyedRow.class, new KeyedRowMapper(elementType, config.orderBy()));
+                stmt.registerCollector(new PageCollectorFactory(config.size()));
+                stmt.bind("keyset_limit", config.size() + 1);
+            };
+        }
+
+        /**
+         * Wraps the SQL in a query that seeks past the key bound to <code>:keyset_0..n</code> and returns at most
+         * <code>:keyset_limit</code> rows. The <code>ClasspathSqlCheckerProcessor</code> explains the same query.
+         *
+         * @param sql - The rendered SQL of the method
+         * @param orderBy - The columns to page by
+         * @param descending - Whether to page in descending order
+         * @param seek - Whether to seek past a key, false for the first page
+         */
+        public static String pageSql(String sql, String[] orderBy, boolean descending, boolean seek) {
+            StringBuilder page = new StringBuilder("SELECT * FROM (")
+                .append(stripTerminator(sql))
+                .append(") keyset_page");
+            if (seek) {
+                page.append(" WHERE ").append(seekPredicate(orderBy, descending ? " < " : " > "));
+            }
+            page.append(" ORDER BY ");
+            for (int i = 0; i < orderBy.length; i++) {
+                page.append(i == 0 ? "" : ", ").append(orderBy[i]).append(descending ? " DESC" : "");
+            }
+            return page.append(" LIMIT :keyset_limit").toString();
+        }
+
+        /**
+         * Expands <code>(a, b) &gt; (:keyset_0, :keyset_1)</code> to <code>a &gt;= :keyset_0 AND (a &gt; :keyset_0 OR
+         * (a = :keyset_0 AND b &gt; :keyset_1))</code>, which all databases can type and use an index for
+         */
+        private static String seekPredicate(String[] orderBy, String comparison) {
+            if (orderBy.length == 1) {
+                return orderBy[0] + comparison + ":keyset_0";
+            }
+            StringBuilder predicate = new StringBuilder(orderBy[0])
+                .append(" ").append(comparison.trim()).append("= :keyset_0 AND (");
+            for (int i = 0; i < orderBy.length; i++) {
+                predicate.append(i == 0 ? "" : " OR ").append("(");
+                for (int j = 0; j < i; j++) {
+                    predicate.append(orderBy[j]).append(" = :keyset_").append(j).append(" AND ");
+                }
+                predicate.append(orderBy[i]).append(comparison).append(":keyset_").append(i).append(")");
+            }
+            return predicate.append(")").toString();
+        }
+
+        private static String stripTerminator(String sql) {
+            String trimmed = sql.trim();
+            return trimmed.endsWith(";") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+        }
+
+        private static Type checkMethod(KeysetPage config, Class<?> sqlObjectType, Method method) {
+            if (!method.isAnnotationPresent(SqlQuery.class) || method.getReturnType() != Page.class) {
+                throw new IllegalStateException(String.format("@KeysetPage method %s.%s must be an @SqlQuery returning a Page",
+                    sqlObjectType.getSimpleName(), method.getName()));
+            }
+            if (method.isAnnotationPresent(UseRowMapper.class) || method.isAnnotationPresent(UseRowReducer.class)) {
+                throw new IllegalStateException("@KeysetPage maps rows with the registered mappers, it does not support "
+                    + "@UseRowMapper or @UseRowReducer on " + method);
+            }
+            if (config.orderBy().length == 0 || config.size() < 1) {
+                throw new IllegalStateException("@KeysetPage needs at least one orderBy column and a positive size on " + method);
+            }
+            return GenericTypes.findGenericParameter(method.getGenericReturnType(), Page.class)
+                .orElseThrow(() -> new IllegalStateException("@KeysetPage method must return a parameterized Page on " + method));
+        }
+
+        private static void checkToken(Class<?> sqlObjectType, Method method) {
+            long tokens = Arrays.stream(method.getParameters())
+                .filter(p -> p.isAnnotationPresent(PageToken.class) && p.getType() == String.class)
+                .count();
+            if (tokens != 1) {
+                throw new IllegalStateException(String.format("@KeysetPage method %s.%s must have one @PageToken String parameter",
+                    sqlObjectType.getSimpleName(), method.getName()));
+            }
+        }
+
+        /**
+         * Maps a row with the mapper registered for the page's type, keeping the values of the ORDER BY columns
+         */
+        private static final class KeyedRowMapper implements RowMapper<KeyedRow> {
+            private final Type type;
+            private final String[] orderBy;
+
+            KeyedRowMapper(Type type, String[] orderBy) {
+                this.type = type;
+                this.orderBy = orderBy;
+            }
+
+            @Override
+            public KeyedRow map(ResultSet rs, StatementContext ctx) throws SQLException {
+                return specialize(rs, ctx).map(rs, ctx);
+            }
+
+            @Override
+            public RowMapper<KeyedRow> specialize(ResultSet rs, StatementContext ctx) throws SQLException {
+                final RowMapper<?> delegate = ctx.findMapperFor(type)
+                    .orElseThrow(() -> new NoSuchMapperException("No mapper registered for " + type))
+                    .specialize(rs, ctx);
+                return (r, c) -> {
+                    Object[] key = new Object[orderBy.length];
+                    for (int i = 0; i < orderBy.length; i++) {
+                        key[i] = r.getObject(orderBy[i]);
+                    }
+                    return new KeyedRow(delegate.map(r, c), key);
+                };
+            }
+        }
+
+        /**
+         * Collects the rows of one page more than the page size into the page and the token of the next one
+         */
+        private static final class PageCollectorFactory implements CollectorFactory {
+            private final int size;
+
+            PageCollectorFactory(int size) {
+                this.size = size;
+            }
+
+            @Override
+            public boolean accepts(Type containerType) {
+                return GenericTypes.getErasedType(containerType) == Page.class;
+            }
+
+            @Override
+            public Optional<Type> elementType(Type containerType) {
+                return Optional.of(KeyedRow.class);
+            }
+
+            @Override
+            public Collector<KeyedRow, ?, Page<Object>> build(Type containerType) {
+                return Collectors.collectingAndThen(Collectors.toList(), rows -> {
+                    List<Object> items = new ArrayList<>(Math.min(rows.size(), size));
+                    for (int i = 0; i < rows.size() && i < size; i++) {
+                        items.add(rows.get(i).item);
+                    }
+                    String nextToken = rows.size() > size ? KeysetToken.encode(rows.get(size - 1).key) : null;
+                    return new Page<>(items, nextToken);
+                });
+            }
+        }
+
+        private static final class KeyedRow {
+            final Object item;
+            final Object[] key;
+
+            KeyedRow(Object item, Object[] key) {
+                this.item = item;
+                this.key = key;
+            }
+        }
+    }
+}
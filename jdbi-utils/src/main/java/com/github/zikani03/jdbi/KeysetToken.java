@@ -0,0 +1,115 @@
+package com.github.zikani03.jdbi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Encodes the key of the last row of a {@link Page} as a URL safe continuation token. Only the values and their
+ * types are encoded, the token is never deserialized into arbitrary objects.
+ */
+final class KeysetToken {
+    private KeysetToken() {
+    }
+
+    static String encode(Object[] key) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(key.length);
+            for (Object value : key) {
+                write(out, value);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode page token", e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private static void write(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte('i');
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte('l');
+            out.writeLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte('f');
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte('d');
+            out.writeUTF(value.toString());
+        } else if (value instanceof String) {
+            out.writeByte('s');
+            out.writeUTF((String) value);
+        } else if (value instanceof Timestamp) {
+            out.writeByte('t');
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof Date) {
+            out.writeByte('D');
+            out.writeUTF(value.toString());
+        } else if (value instanceof UUID) {
+            out.writeByte('u');
+            out.writeUTF(value.toString());
+        } else if (value == null) {
+            throw new IllegalStateException("Keyset pagination needs ORDER BY columns without null values");
+        } else {
+            throw new IllegalStateException("Keyset pagination does not support ORDER BY columns of type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * @param columns - The number of ORDER BY columns the token must have
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    static Object[] decode(String token, int columns) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            Object[] key = new Object[in.readUnsignedByte()];
+            if (key.length != columns) {
+                throw new IllegalArgumentException("Page token has " + key.length + " columns, expected " + columns);
+            }
+            for (int i = 0; i < key.length; i++) {
+                key[i] = read(in);
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("Malformed page token");
+            }
+            return key;
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed page token", e);
+        }
+    }
+
+    private static Object read(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case 'i':
+                return in.readInt();
+            case 'l':
+                return in.readLong();
+            case 'f':
+                return in.readDouble();
+            case 'd':
+                return new BigDecimal(in.readUTF());
+            case 's':
+                return in.readUTF();
+            case 't':
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case 'D':
+                return Date.valueOf(in.readUTF());
+            case 'u':
+                return UUID.fromString(in.readUTF());
+            default:
+                throw new IllegalArgumentException("Malformed page token");
+        }
+    }
+}
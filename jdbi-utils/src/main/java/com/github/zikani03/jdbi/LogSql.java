@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.*;
+import java.lang.reflect.Method;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
@@ -32,17 +33,28 @@ public @interface LogSql {
 
     LogLevel level() default LogLevel.DEBUG;
 
+    /**
+     * Builds one {@link SqlLogger} when the SqlObject is created and attaches it to each statement
+     */
     class Factory implements SqlStatementCustomizerFactory {
         @Override
         public SqlStatementCustomizer createForType(Annotation annotation, Class<?> sqlObjectType) {
-            boolean logRawSql = ((LogSql) annotation).value();
-            LogLevel level = ((LogSql) annotation).level();
-            return q -> q.addCustomizer(new SqlLogger(sqlObjectType, logRawSql, level));
+            return logger((LogSql) annotation, sqlObjectType);
+        }
+
+        @Override
+        public SqlStatementCustomizer createForMethod(Annotation annotation, Class<?> sqlObjectType, Method method) {
+            return logger((LogSql) annotation, sqlObjectType);
+        }
+
+        private SqlStatementCustomizer logger(LogSql config, Class<?> sqlObjectType) {
+            final SqlLogger sqlLogger = new SqlLogger(sqlObjectType, config.value(), config.level());
+            return q -> q.addCustomizer(sqlLogger);
         }
     }
 
     /**
-     * Logs SQL statements after execution
+     * Logs SQL statements after execution. Stateless, so a single instance is shared by all statements
      */
     final class SqlLogger implements StatementCustomizer {
         final Logger logger;
@@ -0,0 +1,45 @@
+package com.github.zikani03.jdbi;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * One page of the results of a {@link KeysetPage} method, with the token to pass to the method for the next page
+ *
+ * @param <T> - The type of the results
+ */
+public final class Page<T> implements Iterable<T> {
+    private final List<T> items;
+    private final String nextToken;
+
+    Page(List<T> items, String nextToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextToken = nextToken;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the token of the next page, or null if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return items.iterator();
+    }
+
+    @Override
+    public String toString() {
+        return "Page{items=" + items + ", nextToken=" + nextToken + "}";
+    }
+}
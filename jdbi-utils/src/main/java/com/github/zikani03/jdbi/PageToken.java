@@ -0,0 +1,49 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.jdbi.v3.core.statement.TemplateEngine;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizerFactory;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizingAnnotation;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementParameterCustomizer;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+
+/**
+ * Marks the <code>String</code> parameter of a {@link KeysetPage} method that takes the continuation token
+ * from {@link Page#getNextToken()}. Pass null for the first page.
+ */
+@Target({ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlStatementCustomizingAnnotation(PageToken.Factory.class)
+@Documented
+public @interface PageToken {
+
+    /**
+     * Binds the key of the token and wraps the SQL in the page query. Parameters are customized after the SqlObject
+     * and the method, so the SQL is wrapped after it is rendered by the template engine they configure.
+     */
+    class Factory implements SqlStatementCustomizerFactory {
+        @Override
+        public SqlStatementParameterCustomizer createForParameter(Annotation annotation, Class<?> sqlObjectType, Method method, Parameter param, int index, Type paramType) {
+            final KeysetPage config = method.getAnnotation(KeysetPage.class);
+            if (config == null || param.getType() != String.class) {
+                throw new IllegalStateException(String.format("@PageToken parameter %s of %s must be a String of a @KeysetPage method",
+                    param.getName(), method));
+            }
+            return (stmt, token) -> {
+                Object[] after = token == null ? null : KeysetToken.decode((String) token, config.orderBy().length);
+                if (after != null) {
+                    for (int i = 0; i < after.length; i++) {
+                        stmt.bind("keyset_" + i, after[i]);
+                    }
+                }
+                TemplateEngine engine = stmt.getConfig(SqlStatements.class).getTemplateEngine();
+                stmt.setTemplateEngine((template, ctx) ->
+                    KeysetPage.Factory.pageSql(engine.render(template, ctx), config.orderBy(), config.descending(), after != null));
+            };
+        }
+    }
+}
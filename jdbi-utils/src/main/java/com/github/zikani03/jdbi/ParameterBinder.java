@@ -0,0 +1,263 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.generic.GenericTypes;
+import org.jdbi.v3.core.statement.SqlStatement;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.customizer.BindFields;
+import org.jdbi.v3.sqlobject.customizer.BindMap;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizingAnnotation;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Binds the arguments of an SqlObject method to a statement built outside of the SqlObject, for decorators
+ * that execute the method's SQL themselves. Supports {@link Bind}, {@link BindBean}, {@link BindFields},
+ * {@link BindMap} and unannotated parameters, which are bound by position and by name when compiled with
+ * <code>-parameters</code>.
+ */
+final class ParameterBinder {
+    private enum Kind { BIND, BEAN, FIELDS, MAP, POSITIONAL }
+
+    private final Method method;
+    private final List<Param> params = new ArrayList<>();
+
+    /**
+     * @param annotation - The decorating annotation, used in error messages
+     * @param ignored - Parameter annotations that the caller handles itself
+     * @throws IllegalStateException if a parameter uses a customizing annotation that cannot be supported
+     */
+    ParameterBinder(Class<? extends Annotation> annotation, Method method, List<Class<? extends Annotation>> ignored) {
+        this(annotation, method, ignored, -1);
+    }
+
+    /**
+     * @param annotation - The decorating annotation, used in error messages
+     * @param ignored - Parameter annotations that the caller handles itself
+     * @param elements - Index of an <code>Iterable</code>, <code>Iterator</code> or <code>Stream</code> parameter whose
+     *                 elements are passed as its argument one at a time and bound by their own type, or -1
+     * @throws IllegalStateException if a parameter uses a customizing annotation that cannot be supported
+     */
+    ParameterBinder(Class<? extends Annotation> annotation, Method method, List<Class<? extends Annotation>> ignored,
+                    int elements) {
+        this.method = method;
+        Parameter[] parameters = method.getParameters();
+        Type[] types = method.getGenericParameterTypes();
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter parameter = parameters[i];
+            for (Annotation a : parameter.getAnnotations()) {
+                Class<? extends Annotation> type = a.annotationType();
+                if (type.isAnnotationPresent(SqlStatementCustomizingAnnotation.class)
+                    && !ignored.contains(type)
+                    && type != Bind.class && type != BindBean.class && type != BindFields.class && type != BindMap.class) {
+                    throw new IllegalStateException(String.format("@%s does not support @%s on parameter %s of %s",
+                        annotation.getSimpleName(), type.getSimpleName(), parameter.getName(), method));
+                }
+            }
+            params.add(new Param(i, params.size(), parameter, i == elements ? elementType(types[i]) : types[i]));
+        }
+    }
+
+    private static Type elementType(Type type) {
+        for (Class<?> container : Arrays.asList(Iterable.class, Iterator.class, Stream.class)) {
+            Optional<Type> element = GenericTypes.findGenericParameter(type, container);
+            if (element.isPresent()) {
+                return element.get();
+            }
+        }
+        throw new IllegalStateException("Cannot find the element type of " + type);
+    }
+
+    /**
+     * Binds the arguments of one call of the method
+     */
+    void bind(SqlStatement<?> stmt, Object[] args) {
+        bind(stmt, args, null);
+    }
+
+    /**
+     * Binds the arguments of one call of the method by name, with every name prefixed, so that the arguments
+     * of several calls can be bound to one statement. Positional parameters are only bound by name.
+     *
+     * @param prefix - The prefix of the names, e.g. <code>r0</code> binds <code>@BindBean("p")</code> to
+     *               <code>r0.p.*</code>, or null to bind the names as they are
+     */
+    void bind(SqlStatement<?> stmt, Object[] args, String prefix) {
+        for (Param p : params) {
+            p.bind(stmt, args[p.index], prefix);
+        }
+    }
+
+    /**
+     * Finds the value bound to a name, e.g. <code>p.userId</code> for a parameter annotated with
+     * <code>@BindBean("p")</code>.
+     *
+     * @return a function returning the bound value from the arguments of a call
+     * @throws IllegalStateException if no parameter binds the name
+     */
+    Function<Object[], Object> resolver(String name) {
+        for (Param p : params) {
+            Function<Object, Object> value = p.resolver(name);
+            if (value != null) {
+                final int index = p.index;
+                return args -> value.apply(args[index]);
+            }
+        }
+        throw new IllegalStateException(String.format("No parameter of %s binds '%s'", method, name));
+    }
+
+    private static final class Param {
+        final int index;
+        final int position;
+        final Type type;
+        final Kind kind;
+        final String name;
+
+        Param(int index, int position, Parameter parameter, Type type) {
+            this.index = index;
+            this.position = position;
+            this.type = type;
+            if (parameter.isAnnotationPresent(Bind.class)) {
+                String value = parameter.getAnnotation(Bind.class).value();
+                kind = Kind.BIND;
+                name = Bind.NO_VALUE.equals(value) ? parameter.getName() : value;
+            } else if (parameter.isAnnotationPresent(BindBean.class)) {
+                kind = Kind.BEAN;
+                name = parameter.getAnnotation(BindBean.class).value();
+            } else if (parameter.isAnnotationPresent(BindFields.class)) {
+                kind = Kind.FIELDS;
+                name = parameter.getAnnotation(BindFields.class).value();
+            } else if (parameter.isAnnotationPresent(BindMap.class)) {
+                kind = Kind.MAP;
+                name = parameter.getAnnotation(BindMap.class).value();
+            } else {
+                kind = Kind.POSITIONAL;
+                name = parameter.isNamePresent() ? parameter.getName() : null;
+            }
+        }
+
+        void bind(SqlStatement<?> stmt, Object arg, String prefix) {
+            switch (kind) {
+                case BIND:
+                    stmt.bindByType(qualify(prefix, name), arg, type);
+                    break;
+                case BEAN:
+                    if (name.isEmpty() && prefix == null) {
+                        stmt.bindBean(arg);
+                    } else {
+                        stmt.bindBean(qualify(prefix, name), arg);
+                    }
+                    break;
+                case FIELDS:
+                    if (name.isEmpty() && prefix == null) {
+                        stmt.bindFields(arg);
+                    } else {
+                        stmt.bindFields(qualify(prefix, name), arg);
+                    }
+                    break;
+                case MAP:
+                    for (Map.Entry<?, ?> e : ((Map<?, ?>) arg).entrySet()) {
+                        String key = String.valueOf(e.getKey());
+                        stmt.bind(qualify(prefix, name.isEmpty() ? key : name + "." + key), e.getValue());
+                    }
+                    break;
+                default:
+                    if (prefix == null) {
+                        stmt.bindByType(position, arg, type);
+                    }
+                    if (name != null) {
+                        stmt.bindByType(qualify(prefix, name), arg, type);
+                    }
+            }
+        }
+
+        private static String qualify(String prefix, String name) {
+            if (prefix == null) {
+                return name;
+            }
+            return name.isEmpty() ? prefix : prefix + "." + name;
+        }
+
+        /**
+         * @return a function reading the value bound to the name from this parameter's argument, or null
+         */
+        Function<Object, Object> resolver(String bindingName) {
+            if (kind == Kind.BIND || kind == Kind.POSITIONAL) {
+                return bindingName.equals(name) ? arg -> arg : null;
+            }
+            String property;
+            if (name.isEmpty()) {
+                property = bindingName;
+            } else if (bindingName.startsWith(name + ".")) {
+                property = bindingName.substring(name.length() + 1);
+            } else {
+                return null;
+            }
+            switch (kind) {
+                case MAP:
+                    return arg -> ((Map<?, ?>) arg).get(property);
+                case FIELDS:
+                    return fieldReader(property);
+                default:
+                    return propertyReader(property);
+            }
+        }
+
+        private Function<Object, Object> propertyReader(String property) {
+            Class<?> beanType = GenericTypes.getErasedType(type);
+            try {
+                for (PropertyDescriptor descriptor : Introspector.getBeanInfo(beanType).getPropertyDescriptors()) {
+                    if (descriptor.getName().equals(property) && descriptor.getReadMethod() != null) {
+                        final Method getter = descriptor.getReadMethod();
+                        return arg -> {
+                            try {
+                                return getter.invoke(arg);
+                            } catch (IllegalAccessException | InvocationTargetException e) {
+                                throw new IllegalStateException("Could not read property " + property + " of " + beanType, e);
+                            }
+                        };
+                    }
+                }
+            } catch (IntrospectionException e) {
+                throw new IllegalStateException("Could not introspect " + beanType, e);
+            }
+            return null;
+        }
+
+        private Function<Object, Object> fieldReader(String property) {
+            Class<?> beanType = GenericTypes.getErasedType(type);
+            for (Class<?> c = beanType; c != null; c = c.getSuperclass()) {
+                try {
+                    final Field field = c.getDeclaredField(property);
+                    field.setAccessible(true);
+                    return arg -> {
+                        try {
+                            return field.get(arg);
+                        } catch (IllegalAccessException e) {
+                            throw new IllegalStateException("Could not read field " + property + " of " + beanType, e);
+                        }
+                    };
+                } catch (NoSuchFieldException e) {
+                    // look in the superclass
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Jdbi;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the results cached by {@link CachedQuery} methods. There is one cache per <code>Jdbi</code> instance,
+ * shared by all of its handles and SqlObjects:
+ *
+ * <pre>
+ *     QueryCache cache = QueryCache.of(jdbi);
+ *     cache.getStatistics().getHitCount();
+ *     cache.invalidate("people");
+ * </pre>
+ */
+public final class QueryCache {
+    private static final Map<Jdbi, QueryCache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Store store = new Store();
+
+    private QueryCache() {
+    }
+
+    /**
+     * @return the cache of the Jdbi instance
+     */
+    public static QueryCache of(Jdbi jdbi) {
+        return CACHES.computeIfAbsent(jdbi, j -> new QueryCache());
+    }
+
+    /**
+     * Returns the cached result of the method for the given arguments, loading and caching it on a miss.
+     */
+    Object get(Method method, CachedQuery config, Object[] args, Callable<Object> loader) throws Exception {
+        MethodCache cache = store.caches.computeIfAbsent(method, m -> store.register(m, config));
+        ArgumentsKey key = new ArgumentsKey(args);
+        Entry cached = cache.get(key);
+        if (cached != null) {
+            return cached.value;
+        }
+        long version = cache.version();
+        Object value = loader.call();
+        cache.putIfCurrent(key, value, version);
+        return value;
+    }
+
+    /**
+     * Discards the cached results of every {@link CachedQuery} method that reads one of the tables
+     *
+     * @param tables - Names of the tables that were modified
+     */
+    public void invalidate(String... tables) {
+        for (String table : tables) {
+            for (MethodCache cache : store.byTable.getOrDefault(normalize(table), Collections.emptySet())) {
+                cache.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Discards all cached results
+     */
+    public void clear() {
+        store.caches.values().forEach(MethodCache::invalidate);
+    }
+
+    /**
+     * @return the statistics of all cached methods combined
+     */
+    public Statistics getStatistics() {
+        long hits = 0, misses = 0, evictions = 0, expirations = 0, invalidations = 0, size = 0;
+        for (MethodCache cache : store.caches.values()) {
+            hits += cache.hits.sum();
+            misses += cache.misses.sum();
+            evictions += cache.evictions.sum();
+            expirations += cache.expirations.sum();
+            invalidations += cache.invalidations.sum();
+            size += cache.size();
+        }
+        return new Statistics(hits, misses, evictions, expirations, invalidations, size);
+    }
+
+    /**
+     * @return the statistics of one cached method, all zero if the method has not been called yet
+     */
+    public Statistics getStatistics(Method method) {
+        MethodCache cache = store.caches.get(method);
+        if (cache == null) {
+            return new Statistics(0, 0, 0, 0, 0, 0);
+        }
+        return new Statistics(cache.hits.sum(), cache.misses.sum(), cache.evictions.sum(),
+            cache.expirations.sum(), cache.invalidations.sum(), cache.size());
+    }
+
+    static String normalize(String table) {
+        return table.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Store {
+        final Map<Method, MethodCache> caches = new ConcurrentHashMap<>();
+        final Map<String, Set<MethodCache>> byTable = new ConcurrentHashMap<>();
+
+        MethodCache register(Method method, CachedQuery config) {
+            MethodCache cache = new MethodCache(config);
+            for (String table : cache.tables) {
+                byTable.computeIfAbsent(table, t -> new CopyOnWriteArraySet<>()).add(cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Bounded, access ordered cache of the results of one method
+     */
+    private static final class MethodCache {
+        final String[] tables;
+        final long ttlNanos;
+        final int maxSize;
+        final LinkedHashMap<ArgumentsKey, Entry> entries;
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder expirations = new LongAdder();
+        final LongAdder invalidations = new LongAdder();
+        private long version;
+
+        MethodCache(CachedQuery config) {
+            this.tables = Arrays.stream(config.tables()).map(QueryCache::normalize).toArray(String[]::new);
+            this.ttlNanos = config.unit().toNanos(config.ttl());
+            this.maxSize = config.maxSize();
+            this.entries = new LinkedHashMap<ArgumentsKey, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ArgumentsKey, Entry> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * @return the cached entry, or null on a miss
+         */
+        synchronized Entry get(ArgumentsKey key) {
+            Entry entry = entries.get(key);
+            if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {
+                entries.remove(key);
+                expirations.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry;
+        }
+
+        /**
+         * @return the number of invalidations so far, used to detect an invalidation while a result is loading
+         */
+        synchronized long version() {
+            return version;
+        }
+
+        /**
+         * Caches the result unless the cache was invalidated since the result started loading
+         */
+        synchronized void putIfCurrent(ArgumentsKey key, Object value, long loadedAt) {
+            if (version == loadedAt) {
+                entries.put(key, new Entry(value, System.nanoTime() + ttlNanos));
+            }
+        }
+
+        synchronized void invalidate() {
+            version++;
+            clear();
+        }
+
+        synchronized void clear() {
+            if (!entries.isEmpty()) {
+                invalidations.add(entries.size());
+                entries.clear();
+            }
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Snapshot of cache statistics
+     */
+    public static final class Statistics {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long expirationCount;
+        private final long invalidationCount;
+        private final long size;
+
+        Statistics(long hitCount, long missCount, long evictionCount, long expirationCount, long invalidationCount, long size) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.expirationCount = expirationCount;
+            this.invalidationCount = invalidationCount;
+            this.size = size;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * @return the number of entries removed because the cache was full
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        /**
+         * @return the number of entries removed because their time to live passed
+         */
+        public long getExpirationCount() {
+            return expirationCount;
+        }
+
+        /**
+         * @return the number of entries removed because a table they read was modified
+         */
+        public long getInvalidationCount() {
+            return invalidationCount;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Statistics{hits=%d, misses=%d, evictions=%d, expirations=%d, invalidations=%d, size=%d}",
+                hitCount, missCount, evictionCount, expirationCount, invalidationCount, size);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.Handler;
+import org.jdbi.v3.sqlobject.HandlerDecorator;
+import org.jdbi.v3.sqlobject.SqlMethodDecoratingAnnotation;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+
+/**
+ * Marks SqlObject query methods that can read from a replica when the SqlObject's <code>Jdbi</code> is the
+ * primary of a {@link RoutingJdbi}, whether the SqlObject was created through the wrapper or directly from the
+ * primary. On a type, marks all of its <code>@SqlQuery</code> methods. SqlObjects of other <code>Jdbi</code>
+ * instances run the methods as usual.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlMethodDecoratingAnnotation(ReadOnly.Decorator.class)
+@Documented
+public @interface ReadOnly {
+
+    class Decorator implements HandlerDecorator {
+        @Override
+        public Handler decorateHandler(Handler base, Class<?> sqlObjectType, Method method) {
+            if (!method.isAnnotationPresent(SqlQuery.class)) {
+                if (method.isAnnotationPresent(ReadOnly.class)) {
+                    throw new IllegalStateException(String.format("@ReadOnly method %s.%s must be an @SqlQuery",
+                        sqlObjectType.getSimpleName(), method.getName()));
+                }
+                return base;
+            }
+            SqlObjectMethods.checkMaterialized(ReadOnly.class, sqlObjectType, method);
+            return (target, args, handle) -> {
+                RoutingJdbi router = RoutingJdbi.forPrimary(handle.getJdbi());
+                if (router == null || SqlObjectMethods.inTransaction(handle)) {
+                    return base.invoke(target, args, handle);
+                }
+                return router.read(sqlObjectType, method, args, () -> base.invoke(target, args, handle));
+            };
+        }
+    }
+}
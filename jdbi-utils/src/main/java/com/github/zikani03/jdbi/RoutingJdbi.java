@@ -0,0 +1,260 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.ConnectionException;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.HandleConsumer;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.config.JdbiConfig;
+import org.jdbi.v3.core.extension.ExtensionMethod;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+import org.jdbi.v3.core.transaction.DelegatingTransactionHandler;
+import org.jdbi.v3.core.transaction.TransactionHandler;
+import org.jdbi.v3.sqlobject.statement.SqlBatch;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Wraps a primary <code>Jdbi</code> and its read replicas. SqlObjects run on the primary, except for
+ * {@link ReadOnly} query methods, which are balanced over the replicas in turn:
+ *
+ * <pre>
+ *     RoutingJdbi db = RoutingJdbi.create(primary, replica1, replica2)
+ *         .setReadYourWritesWindow(2, TimeUnit.SECONDS);
+ *     PostDAO dao = db.onDemand(PostDAO.class);
+ * </pre>
+ *
+ * The routing is kept in the primary's configuration, so wrapping the primary reroutes the <code>@ReadOnly</code>
+ * methods of all its SqlObjects, including those created with <code>primary.onDemand</code> or
+ * <code>attach</code> on its handles without going through the wrapper.
+ *
+ * Reads stay on the primary when the SqlObject is attached to a handle in a transaction, while the same thread
+ * has uncommitted writes, and for the read-your-writes window after the same thread wrote to the primary, i.e. ran
+ * an <code>@SqlUpdate</code> or <code>@SqlBatch</code> method or a statement that may change data, such as an
+ * <code>INSERT ... RETURNING</code> in an <code>@SqlQuery</code>.
+ * Writes in a transaction start the window when it commits. If no replica can be connected to, reads fall back
+ * to the primary.
+ *
+ * The replicas must have the <code>SqlObjectPlugin</code> installed.
+ */
+public final class RoutingJdbi {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutingJdbi.class);
+    private static final Pattern DATA_CHANGE = Pattern.compile("\\b(INSERT|UPDATE|DELETE|MERGE)\\b");
+
+    private final Jdbi primary;
+    private final List<Jdbi> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<WriteState> writes = ThreadLocal.withInitial(WriteState::new);
+    private volatile long windowNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private RoutingJdbi(Jdbi primary, List<Jdbi> replicas) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+    }
+
+    /**
+     * Wraps the primary, which is then configured to track its writes. A primary can only be wrapped once.
+     *
+     * @param primary - The Jdbi that all writes go to
+     * @param replicas - The Jdbi instances to balance {@link ReadOnly} queries over
+     */
+    public static RoutingJdbi create(Jdbi primary, Jdbi... replicas) {
+        RoutingJdbi router = new RoutingJdbi(primary, Arrays.asList(replicas));
+        Routing routing = primary.getConfig(Routing.class);
+        synchronized (routing) {
+            if (routing.router != null) {
+                throw new IllegalStateException("The primary Jdbi is already wrapped by a RoutingJdbi");
+            }
+            routing.router = router;
+        }
+        primary.getConfig(SqlStatements.class).addCustomizer(router.new WriteTracker());
+        primary.setTransactionHandler(router.new CommitTracker(primary.getTransactionHandler()));
+        return router;
+    }
+
+    /**
+     * @return the router wrapping the Jdbi as its primary, or null
+     */
+    static RoutingJdbi forPrimary(Jdbi jdbi) {
+        return jdbi.getConfig(Routing.class).router;
+    }
+
+    /**
+     * Sets how long reads stay on the primary after the same thread wrote to it. Defaults to 1 second
+     */
+    public RoutingJdbi setReadYourWritesWindow(long window, TimeUnit unit) {
+        this.windowNanos = unit.toNanos(window);
+        return this;
+    }
+
+    public Jdbi getPrimary() {
+        return primary;
+    }
+
+    public List<Jdbi> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Starts the read-your-writes window of the current thread, for writes the wrapper can't see,
+     * e.g. made by another system
+     */
+    public void markWritten() {
+        writes.get().lastWrite = System.nanoTime();
+    }
+
+    /**
+     * @return whether reads of the current thread must stay on the primary
+     */
+    public boolean isPinnedToPrimary() {
+        WriteState state = writes.get();
+        return state.uncommitted || state.lastWrite != 0 && System.nanoTime() - state.lastWrite < windowNanos;
+    }
+
+    public <T> T onDemand(Class<T> sqlObjectType) {
+        return primary.onDemand(sqlObjectType);
+    }
+
+    public Handle open() {
+        return primary.open();
+    }
+
+    public <R, X extends Exception> R withHandle(HandleCallback<R, X> callback) throws X {
+        return primary.withHandle(callback);
+    }
+
+    public <X extends Exception> void useHandle(HandleConsumer<X> callback) throws X {
+        primary.useHandle(callback);
+    }
+
+    public <R, X extends Exception> R inTransaction(HandleCallback<R, X> callback) throws X {
+        return primary.inTransaction(callback);
+    }
+
+    public <X extends Exception> void useTransaction(HandleConsumer<X> callback) throws X {
+        primary.useTransaction(callback);
+    }
+
+    /**
+     * Runs the SqlObject method on the next replica that can be connected to, or on the primary
+     */
+    Object read(Class<?> sqlObjectType, Method method, Object[] args, ReadHandler onPrimary) throws Exception {
+        if (replicas.isEmpty() || isPinnedToPrimary()) {
+            return onPrimary.read();
+        }
+        int first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Jdbi replica = replicas.get((first + i) % replicas.size());
+            try {
+                return replica.withExtension(sqlObjectType, sqlObject -> SqlObjectMethods.invoke(method, sqlObject, args));
+            } catch (ConnectionException e) {
+                LOGGER.warn("Could not connect to replica {}, trying the next one: {}", replica, e.getMessage());
+                LOGGER.debug("Replica connection failure", e);
+            }
+        }
+        return onPrimary.read();
+    }
+
+    @FunctionalInterface
+    interface ReadHandler {
+        Object read() throws Exception;
+    }
+
+    /**
+     * The router wrapping a Jdbi as its primary, kept in the Jdbi's configuration so it is collected with it
+     */
+    public static final class Routing implements JdbiConfig<Routing> {
+        private volatile RoutingJdbi router;
+
+        public Routing() {
+        }
+
+        private Routing(Routing that) {
+            this.router = that.router;
+        }
+
+        @Override
+        public Routing createCopy() {
+            return new Routing(this);
+        }
+    }
+
+    private static final class WriteState {
+        long lastWrite;
+        boolean uncommitted;
+    }
+
+    /**
+     * Starts the read-your-writes window after a write on the primary, or marks the transaction as written
+     */
+    private final class WriteTracker implements StatementCustomizer {
+        @Override
+        public void afterExecution(PreparedStatement stmt, StatementContext ctx) throws SQLException {
+            if (!isWrite(ctx)) {
+                return;
+            }
+            if (ctx.getConnection().getAutoCommit()) {
+                markWritten();
+            } else {
+                writes.get().uncommitted = true;
+            }
+        }
+
+        private boolean isWrite(StatementContext ctx) {
+            ExtensionMethod extensionMethod = ctx.getExtensionMethod();
+            if (extensionMethod != null) {
+                Method method = extensionMethod.getMethod();
+                if (method.isAnnotationPresent(SqlUpdate.class) || method.isAnnotationPresent(SqlBatch.class)) {
+                    return true;
+                }
+            }
+            return isWriteSql(ctx.getRenderedSql());
+        }
+    }
+
+    /**
+     * Whether the SQL may change data: anything but a <code>SELECT</code> or <code>WITH</code> query, or a query
+     * that contains a data change, e.g. <code>INSERT ... RETURNING</code>, <code>FINAL TABLE (UPDATE ...)</code>,
+     * a data-modifying <code>WITH</code> or a <code>SELECT ... FOR UPDATE</code>
+     */
+    static boolean isWriteSql(String renderedSql) {
+        String sql = renderedSql.trim().toUpperCase(Locale.ROOT);
+        return !sql.startsWith("SELECT") && !sql.startsWith("WITH") || DATA_CHANGE.matcher(sql).find();
+    }
+
+    /**
+     * Starts the read-your-writes window when a transaction with writes commits
+     */
+    private final class CommitTracker extends DelegatingTransactionHandler {
+        CommitTracker(TransactionHandler delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void commit(Handle handle) {
+            super.commit(handle);
+            WriteState state = writes.get();
+            if (state.uncommitted) {
+                state.uncommitted = false;
+                markWritten();
+            }
+        }
+
+        @Override
+        public void rollback(Handle handle) {
+            super.rollback(handle);
+            writes.get().uncommitted = false;
+        }
+    }
+}
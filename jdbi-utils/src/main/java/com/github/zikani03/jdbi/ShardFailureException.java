@@ -0,0 +1,27 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.JdbiException;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown by {@link ShardedJdbi} when shards fail or time out and the failure policy does not allow leaving them out
+ */
+public class ShardFailureException extends JdbiException {
+    private static final long serialVersionUID = 1L;
+
+    private final Map<Integer, Throwable> failures;
+
+    public ShardFailureException(String message, Map<Integer, Throwable> failures, Throwable cause) {
+        super(message, cause);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return the failure of each failed shard, by shard index
+     */
+    public Map<Integer, Throwable> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,309 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.extension.ExtensionCallback;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
+
+/**
+ * Runs the same SqlObject calls on several sharded databases in parallel and merges their results, so that
+ * a query takes as long as the slowest shard instead of the sum of all of them:
+ *
+ * <pre>
+ *     ShardedJdbi shards = ShardedJdbi.create(shard0, shard1, shard2)
+ *         .setShardTimeout(2, TimeUnit.SECONDS)
+ *         .setFailurePolicy(ShardedJdbi.FailurePolicy.SKIP_FAILED);
+ *
+ *     List&lt;Post&gt; latest = shards.fanOut(PostDAO.class)
+ *         .mergeSorted(dao -&gt; dao.findLatest(), Comparator.comparing(Post::getCreated).reversed());
+ *     long posts = shards.fanOut(PostDAO.class)
+ *         .collect(PostDAO::count, Collectors.summingLong(Long::longValue));
+ *     List&lt;Post&gt; mine = shards.fanOut(PostDAO.class).onKeys(userIds)
+ *         .concat(dao -&gt; dao.findByUsers(userIds));
+ * </pre>
+ *
+ * The calls run on a bounded executor, by default a pool with a thread per shard. A shard that fails, or does not
+ * answer before the fan-out's shard timeout passes, fails the whole call or is left out of the result, depending on the
+ * {@link FailurePolicy}. The shards must have the <code>SqlObjectPlugin</code> installed. Call {@link #close()}
+ * to shut down the default pool when the shards are no longer queried.
+ */
+public final class ShardedJdbi implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedJdbi.class);
+
+    /**
+     * What to do when some of the shards fail or time out
+     */
+    public enum FailurePolicy {
+        /**
+         * Cancel the other shards and throw a {@link ShardFailureException}
+         */
+        FAIL,
+        /**
+         * Merge the results of the shards that answered, unless none did
+         */
+        SKIP_FAILED
+    }
+
+    private final List<Jdbi> shards;
+    private final ExecutorService defaultExecutor;
+    private volatile ExecutorService executor;
+    private volatile ToIntFunction<Object> shardFunction = Object::hashCode;
+    private volatile long shardTimeoutNanos;
+    private volatile FailurePolicy failurePolicy = FailurePolicy.FAIL;
+
+    private ShardedJdbi(List<Jdbi> shards) {
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.defaultExecutor = Executors.newFixedThreadPool(shards.size(), new ShardThreadFactory());
+        this.executor = defaultExecutor;
+    }
+
+    /**
+     * @param shards - The Jdbi instance of each shard, a key belongs to the shard at the index its shard function selects
+     */
+    public static ShardedJdbi create(Jdbi... shards) {
+        if (shards.length == 0) {
+            throw new IllegalArgumentException("ShardedJdbi needs at least one shard");
+        }
+        return new ShardedJdbi(Arrays.asList(shards));
+    }
+
+    /**
+     * Sets the executor the shards are queried on, which should be bounded. The default pool is shut down.
+     */
+    public ShardedJdbi setExecutor(ExecutorService executor) {
+        this.executor = Objects.requireNonNull(executor);
+        if (executor != defaultExecutor) {
+            defaultExecutor.shutdown();
+        }
+        return this;
+    }
+
+    /**
+     * Sets how keys are mapped to shards. The result is taken modulo the number of shards.
+     * Defaults to the key's hash code
+     */
+    public ShardedJdbi setShardFunction(ToIntFunction<Object> shardFunction) {
+        this.shardFunction = Objects.requireNonNull(shardFunction);
+        return this;
+    }
+
+    /**
+     * Sets how long a fan-out waits for the shards, one deadline for all of them counted from the start of the
+     * fan-out, so time a shard's call spends queued on the executor counts against it. The timeout also becomes
+     * the query timeout of the shards' statements, otherwise their own configured query timeout applies.
+     * Defaults to no timeout
+     */
+    public ShardedJdbi setShardTimeout(long timeout, TimeUnit unit) {
+        this.shardTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Sets what to do when shards fail. Defaults to {@link FailurePolicy#FAIL}
+     */
+    public ShardedJdbi setFailurePolicy(FailurePolicy failurePolicy) {
+        this.failurePolicy = Objects.requireNonNull(failurePolicy);
+        return this;
+    }
+
+    public List<Jdbi> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return the index of the shard the key belongs to
+     */
+    public int shardIndex(Object key) {
+        return Math.floorMod(shardFunction.applyAsInt(key), shards.size());
+    }
+
+    /**
+     * @return the shard the key belongs to
+     */
+    public Jdbi onShard(Object key) {
+        return shards.get(shardIndex(key));
+    }
+
+    /**
+     * Shuts down the default pool. An executor set with {@link #setExecutor(ExecutorService)} is left to its owner
+     */
+    @Override
+    public void close() {
+        defaultExecutor.shutdown();
+    }
+
+    /**
+     * Starts a call of the SqlObject on all shards
+     */
+    public <T> FanOut<T> fanOut(Class<T> sqlObjectType) {
+        Set<Integer> all = new TreeSet<>();
+        for (int i = 0; i < shards.size(); i++) {
+            all.add(i);
+        }
+        return new FanOut<>(sqlObjectType, all);
+    }
+
+    /**
+     * A call of a SqlObject on several shards, with the way their results are merged
+     */
+    public final class FanOut<T> {
+        private final Class<T> sqlObjectType;
+        private final Set<Integer> targets;
+
+        private FanOut(Class<T> sqlObjectType, Set<Integer> targets) {
+            this.sqlObjectType = sqlObjectType;
+            this.targets = targets;
+        }
+
+        /**
+         * Limits the call to the shards the keys belong to
+         */
+        public FanOut<T> onKeys(Collection<?> keys) {
+            Set<Integer> selected = new TreeSet<>();
+            for (Object key : keys) {
+                selected.add(shardIndex(key));
+            }
+            return new FanOut<>(sqlObjectType, selected);
+        }
+
+        /**
+         * @return the results of the shards one after the other, in shard order
+         */
+        public <R, X extends Exception> List<R> concat(ExtensionCallback<? extends Collection<? extends R>, T, X> call) {
+            List<R> merged = new ArrayList<>();
+            for (Collection<? extends R> result : execute(call)) {
+                merged.addAll(result);
+            }
+            return merged;
+        }
+
+        /**
+         * Merges the results of the shards, each sorted by the comparator, into one sorted list
+         */
+        public <R, X extends Exception> List<R> mergeSorted(ExtensionCallback<? extends List<? extends R>, T, X> call,
+                                                            Comparator<? super R> comparator) {
+            List<? extends List<? extends R>> results = execute(call);
+            PriorityQueue<Head<R>> heads = new PriorityQueue<>(Math.max(1, results.size()), (a, b) -> comparator.compare(a.value, b.value));
+            int size = 0;
+            for (List<? extends R> result : results) {
+                size += result.size();
+                Iterator<? extends R> iterator = result.iterator();
+                if (iterator.hasNext()) {
+                    heads.add(new Head<>(iterator));
+                }
+            }
+            List<R> merged = new ArrayList<>(size);
+            while (!heads.isEmpty()) {
+                Head<R> head = heads.poll();
+                merged.add(head.value);
+                if (head.advance()) {
+                    heads.add(head);
+                }
+            }
+            return merged;
+        }
+
+        /**
+         * Aggregates the results of the shards, e.g. <code>Collectors.summingLong(Long::longValue)</code> for counts
+         */
+        public <R, A, X extends Exception> A collect(ExtensionCallback<? extends R, T, X> call, Collector<? super R, ?, A> collector) {
+            return execute(call).stream().collect(collector);
+        }
+
+        private <R> List<R> execute(ExtensionCallback<? extends R, T, ? extends Exception> call) {
+            long timeoutNanos = shardTimeoutNanos;
+            FailurePolicy policy = failurePolicy;
+            Integer queryTimeout = timeoutNanos == 0 ? null : (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(timeoutNanos + 999_999_999));
+            CompletionService<R> completion = new ExecutorCompletionService<>(executor);
+            Map<Future<R>, Integer> pending = new HashMap<>();
+            for (int index : targets) {
+                Jdbi shard = shards.get(index);
+                pending.put(completion.submit(() -> shard.withHandle(h -> {
+                    if (queryTimeout != null) {
+                        h.getConfig(SqlStatements.class).setQueryTimeout(queryTimeout);
+                    }
+                    return call.withExtension(h.attach(sqlObjectType));
+                })), index);
+            }
+            Map<Integer, R> results = new TreeMap<>();
+            Map<Integer, Throwable> failures = new TreeMap<>();
+            long deadline = System.nanoTime() + timeoutNanos;
+            try {
+                while (!pending.isEmpty()) {
+                    Future<R> done = timeoutNanos == 0
+                        ? completion.take()
+                        : completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        for (int index : pending.values()) {
+                            failures.put(index, new TimeoutException("Shard " + index + " did not answer in time"));
+                        }
+                        break;
+                    }
+                    int index = pending.remove(done);
+                    try {
+                        results.put(index, done.get());
+                    } catch (ExecutionException e) {
+                        failures.put(index, e.getCause());
+                        if (policy == FailurePolicy.FAIL) {
+                            break;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ShardFailureException("Interrupted while waiting for the shards", Collections.emptyMap(), e);
+            } finally {
+                pending.keySet().forEach(f -> f.cancel(true));
+            }
+            if (!failures.isEmpty()) {
+                if (policy == FailurePolicy.FAIL || results.isEmpty()) {
+                    Throwable first = failures.values().iterator().next();
+                    throw new ShardFailureException("Shards " + failures.keySet() + " failed", failures, first);
+                }
+                LOGGER.warn("Leaving out the results of shards {} of {}", failures.keySet(), sqlObjectType.getSimpleName());
+            }
+            return new ArrayList<>(results.values());
+        }
+    }
+
+    /**
+     * The next value of one shard's sorted result
+     */
+    private static final class Head<R> {
+        private final Iterator<? extends R> iterator;
+        private R value;
+
+        Head(Iterator<? extends R> iterator) {
+            this.iterator = iterator;
+            this.value = iterator.next();
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            value = iterator.next();
+            return true;
+        }
+    }
+
+    private static final class ShardThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOLS = new AtomicInteger();
+        private final int pool = POOLS.incrementAndGet();
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "sharded-jdbi-" + pool + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.Handler;
+import org.jdbi.v3.sqlobject.HandlerDecorator;
+import org.jdbi.v3.sqlobject.SqlMethodDecoratingAnnotation;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent calls of an SqlObject query method with equal arguments on the same <code>Jdbi</code>:
+ * the first call runs the query and the others wait for it and return the same result, or throw the same exception.
+ * Waiting calls do not take a connection, so a stampede of identical queries uses one connection.
+ *
+ * Results of methods returning a <code>List</code>, <code>Set</code>, <code>Map</code> or <code>Collection</code>
+ * are shared as unmodifiable views; other results are shared between callers and must not be modified.
+ * Don't use it for queries that must see uncommitted changes of the caller's transaction.
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlMethodDecoratingAnnotation(SingleFlight.Decorator.class)
+@Documented
+public @interface SingleFlight {
+
+    class Decorator implements HandlerDecorator {
+        private static final Map<List<Object>, CompletableFuture<Object>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+        @Override
+        public Handler decorateHandler(Handler base, Class<?> sqlObjectType, Method method) {
+            SqlObjectMethods.checkMaterialized(SingleFlight.class, sqlObjectType, method);
+            final Class<?> returnType = method.getReturnType();
+            return (target, args, handle) -> {
+                final List<Object> key = Arrays.asList(handle.getJdbi(), method, new ArgumentsKey(args));
+                final CompletableFuture<Object> flight = new CompletableFuture<>();
+                final CompletableFuture<Object> leader = IN_FLIGHT.putIfAbsent(key, flight);
+                if (leader != null) {
+                    return await(leader);
+                }
+                try {
+                    Object result = SqlObjectMethods.readOnly(returnType, base.invoke(target, args, handle));
+                    flight.complete(result);
+                    return result;
+                } catch (Throwable e) {
+                    flight.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    IN_FLIGHT.remove(key, flight);
+                }
+            };
+        }
+
+        private static Object await(CompletableFuture<Object> leader) throws Exception {
+            try {
+                return leader.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
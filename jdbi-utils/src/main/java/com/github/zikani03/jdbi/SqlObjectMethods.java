@@ -0,0 +1,165 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.extension.HandleSupplier;
+import org.jdbi.v3.core.result.ResultBearing;
+import org.jdbi.v3.core.result.ResultIterable;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizer;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizerFactory;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizingAnnotation;
+import org.jdbi.v3.sqlobject.statement.GetGeneratedKeys;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Helpers for decorators that share the result of an SqlObject method between callers or run it elsewhere
+ */
+final class SqlObjectMethods {
+    private static final List<Class<?>> LAZY_TYPES = Arrays.asList(
+        Stream.class, Iterator.class, ResultIterable.class, ResultBearing.class);
+
+    /**
+     * The handle of the supplier of on-demand SqlObjects, which is null until the handle is opened
+     */
+    private static final Field LAZY_HANDLE = lazyHandleField();
+
+    private SqlObjectMethods() {
+    }
+
+    private static Field lazyHandleField() {
+        try {
+            Field field = Class.forName("org.jdbi.v3.core.LazyHandleSupplier").getDeclaredField("handle");
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Fails if the method returns nothing or a result that is read lazily from an open handle
+     */
+    static void checkMaterialized(Class<? extends Annotation> annotation, Class<?> sqlObjectType, Method method) {
+        final Class<?> returnType = method.getReturnType();
+        if (returnType == void.class || LAZY_TYPES.stream().anyMatch(t -> t.isAssignableFrom(returnType))) {
+            throw new IllegalStateException(String.format(
+                "@%s method %s.%s must return a materialized result, not %s",
+                annotation.getSimpleName(), sqlObjectType.getSimpleName(), method.getName(), returnType.getSimpleName()));
+        }
+    }
+
+    /**
+     * Wraps lists, sets, maps and collections in unmodifiable views so they can be shared
+     */
+    static Object readOnly(Class<?> returnType, Object result) {
+        if (result == null) {
+            return null;
+        }
+        if (returnType == List.class) {
+            return Collections.unmodifiableList((List<?>) result);
+        }
+        if (returnType == Set.class) {
+            return Collections.unmodifiableSet((Set<?>) result);
+        }
+        if (returnType == Map.class) {
+            return Collections.unmodifiableMap((Map<?, ?>) result);
+        }
+        if (returnType == Collection.class) {
+            return Collections.unmodifiableCollection((Collection<?>) result);
+        }
+        return result;
+    }
+
+    /**
+     * Whether the SqlObject is attached to a handle in a transaction, including the transactions of
+     * <code>useTransaction</code>, <code>withExtension</code> and <code>@Transaction</code> on on-demand SqlObjects
+     */
+    static boolean inTransaction(HandleSupplier handle) {
+        return isHandleOpen(handle) && handle.getHandle().isInTransaction();
+    }
+
+    /**
+     * Whether the supplier has a handle already. On-demand SqlObjects open one on first use, so asking for it only
+     * to find out it is not in a transaction would take a connection from the pool
+     */
+    static boolean isHandleOpen(HandleSupplier handle) {
+        if (LAZY_HANDLE == null || !LAZY_HANDLE.getDeclaringClass().isInstance(handle)) {
+            return true;
+        }
+        try {
+            return LAZY_HANDLE.get(handle) != null;
+        } catch (IllegalAccessException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Fails unless the method is an <code>@SqlUpdate</code> without generated keys, whose only method level
+     * customizing annotation is {@link Counter}, for decorators that execute the method's SQL themselves
+     */
+    static void checkUpdate(Class<? extends Annotation> annotation, Class<?> sqlObjectType, Method method) {
+        if (!method.isAnnotationPresent(SqlUpdate.class) || method.isAnnotationPresent(GetGeneratedKeys.class)) {
+            throw new IllegalStateException(String.format("@%s method %s.%s must be an @SqlUpdate without @GetGeneratedKeys",
+                annotation.getSimpleName(), sqlObjectType.getSimpleName(), method.getName()));
+        }
+        for (Annotation a : method.getAnnotations()) {
+            Class<? extends Annotation> type = a.annotationType();
+            if (type != Counter.class && type.isAnnotationPresent(SqlStatementCustomizingAnnotation.class)) {
+                throw new IllegalStateException(String.format("@%s does not support @%s on %s.%s",
+                    annotation.getSimpleName(), type.getSimpleName(), sqlObjectType.getSimpleName(), method.getName()));
+            }
+        }
+    }
+
+    /**
+     * Creates the customizers of the annotations on the SqlObject type, except {@link Counter}, for decorators that
+     * execute the method's SQL themselves
+     */
+    static List<SqlStatementCustomizer> typeCustomizers(Class<?> sqlObjectType) {
+        List<SqlStatementCustomizer> customizers = new ArrayList<>();
+        for (Annotation a : sqlObjectType.getAnnotations()) {
+            SqlStatementCustomizingAnnotation customizing = a.annotationType().getAnnotation(SqlStatementCustomizingAnnotation.class);
+            if (customizing == null || a.annotationType() == Counter.class) {
+                continue;
+            }
+            try {
+                SqlStatementCustomizerFactory factory = customizing.value().getDeclaredConstructor().newInstance();
+                customizers.add(factory.createForType(a, sqlObjectType));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create the customizer of @" + a.annotationType().getSimpleName()
+                    + " on " + sqlObjectType.getSimpleName(), e);
+            }
+        }
+        return customizers;
+    }
+
+    /**
+     * @return the {@link Counter} of the method or else of the SqlObject type, or null
+     */
+    static Counter findCounter(Class<?> sqlObjectType, Method method) {
+        return method.isAnnotationPresent(Counter.class) ? method.getAnnotation(Counter.class) : sqlObjectType.getAnnotation(Counter.class);
+    }
+
+    /**
+     * Calls the method on the SqlObject, rethrowing what the method throws instead of an InvocationTargetException
+     */
+    static Object invoke(Method method, Object sqlObject, Object[] args) throws Exception {
+        try {
+            return method.invoke(sqlObject, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.Query;
+import org.jdbi.v3.core.statement.SqlLogger;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizer;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizerFactory;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizingAnnotation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.annotation.*;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Annotate SqlObject query methods returning a <code>Stream</code>, <code>Iterator</code> or
+ * <code>ResultIterable</code> to read large results in chunks of {@link #fetchSize()} rows, instead of
+ * the whole result being buffered by the driver.
+ *
+ * The result set is forward only and read only. Drivers like PostgreSQL only use a cursor outside of auto-commit
+ * mode, so a query outside of a transaction begins one on its handle, which is committed when the statement is
+ * closed, or rolled back if the query failed. Close the stream before its handle: closing a handle whose stream is
+ * still open rolls the transaction back and, unless <code>Handles.setForceEndTransactions(false)</code>, throws a
+ * <code>TransactionException</code> from <code>Handle.close()</code>. Queries in a transaction are left in it. For MySQL the fetch size is
+ * set to <code>Integer.MIN_VALUE</code> to stream rows, unless the URL sets <code>useCursorFetch=true</code>.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@SqlStatementCustomizingAnnotation(Streaming.Factory.class)
+@Documented
+public @interface Streaming {
+
+    /**
+     * The number of rows fetched from the database at a time. Defaults to 1000
+     */
+    int fetchSize() default 1000;
+
+    /**
+     * Builds one {@link StreamingCustomizer} when the SqlObject is created and attaches it to each query
+     */
+    class Factory implements SqlStatementCustomizerFactory {
+        @Override
+        public SqlStatementCustomizer createForType(Annotation annotation, Class<?> sqlObjectType) {
+            return streaming((Streaming) annotation);
+        }
+
+        @Override
+        public SqlStatementCustomizer createForMethod(Annotation annotation, Class<?> sqlObjectType, Method method) {
+            return streaming((Streaming) annotation);
+        }
+
+        private SqlStatementCustomizer streaming(Streaming config) {
+            if (config.fetchSize() < 1) {
+                throw new IllegalStateException("@Streaming fetchSize must be positive");
+            }
+            final StreamingCustomizer customizer = new StreamingCustomizer(config.fetchSize());
+            return q -> {
+                if (q instanceof Query) {
+                    q.getContext().setConcurrentUpdatable(false);
+                    q.addCustomizer(customizer);
+                    SqlStatements statements = q.getConfig(SqlStatements.class);
+                    statements.setSqlLogger(new StreamTransaction(q.getHandle(), statements.getSqlLogger()));
+                }
+            };
+        }
+    }
+
+    /**
+     * Sets up a statement for reading its result with a cursor. Stateless, so a single instance is shared by all
+     * statements. It does not begin a transaction, see {@link Streaming}
+     */
+    final class StreamingCustomizer implements StatementCustomizer {
+        private static final Logger LOGGER = LoggerFactory.getLogger(StreamingCustomizer.class);
+
+        private final int fetchSize;
+
+        public StreamingCustomizer(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        @Override
+        public void beforeExecution(PreparedStatement stmt, StatementContext ctx) throws SQLException {
+            if (stmt.getResultSetType() != ResultSet.TYPE_FORWARD_ONLY) {
+                LOGGER.warn("Statement is not forward only, the driver may buffer the whole result: {}", ctx.getRenderedSql());
+            }
+            stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+            stmt.setFetchSize(isMySqlWithoutCursorFetch(stmt.getConnection()) ? Integer.MIN_VALUE : fetchSize);
+        }
+
+        private static boolean isMySqlWithoutCursorFetch(Connection connection) throws SQLException {
+            DatabaseMetaData metaData = connection.getMetaData();
+            return "MySQL".equalsIgnoreCase(metaData.getDatabaseProductName())
+                && !String.valueOf(metaData.getURL()).contains("useCursorFetch=true");
+        }
+    }
+
+    /**
+     * Begins a transaction on the handle of a query outside of one, and ends it when the query is closed or fails.
+     * A {@link SqlLogger}, wrapping the configured one, since that is what sees a failed execution.
+     */
+    final class StreamTransaction implements SqlLogger {
+        private final Handle handle;
+        private final SqlLogger delegate;
+        private boolean began;
+
+        StreamTransaction(Handle handle, SqlLogger delegate) {
+            this.handle = handle;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void logBeforeExecution(StatementContext ctx) {
+            delegate.logBeforeExecution(ctx);
+            if (handle.isInTransaction()) {
+                return;
+            }
+            handle.begin();
+            began = true;
+            ctx.addCleanable(() -> {
+                if (began) {
+                    began = false;
+                    handle.commit();
+                }
+            });
+        }
+
+        @Override
+        public void logAfterExecution(StatementContext ctx) {
+            delegate.logAfterExecution(ctx);
+        }
+
+        @Override
+        public void logException(StatementContext ctx, SQLException ex) {
+            delegate.logException(ctx, ex);
+            if (began) {
+                began = false;
+                handle.rollback();
+            }
+        }
+    }
+}
@@ -38,15 +38,21 @@ public @interface Valid {
             return create(validationGroups);
         }
 
+        /**
+         * Validates the argument as the statement is being set up, which is before it is executed,
+         * so no customizer needs to be allocated per call
+         */
         private SqlStatementParameterCustomizer create(Class<?>... groups) {
-            return (q, entity) -> q.addCustomizer(new ValidatingCustomizer(entity, groups));
+            return (q, entity) -> Validation.throwOnFailedValidation(entity, groups);
         }
     }
 
     /**
      * Statement Customizer that validates method parameters
      *
+     * @deprecated {@link Factory} validates the arguments as the statement is set up and no longer uses it
      */
+    @Deprecated
     class ValidatingCustomizer implements StatementCustomizer {
         final Object entity;
         final Class<?>[] groups;
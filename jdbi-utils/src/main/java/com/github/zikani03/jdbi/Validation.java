@@ -16,6 +16,11 @@ public final class Validation {
                     .configure()
                     .buildValidatorFactory();
 
+    /**
+     * Validators are thread-safe, so one is shared instead of fetching one per validation
+     */
+    static final Validator validator = validatorFactory.getValidator();
+
     /**
      * Validates arguments via Hibernate validator and throws an {@link ValidationException}
      * if the object fails validation otherwise returns the object itself
@@ -34,9 +39,9 @@ public final class Validation {
      * @throws Exception
      */
     public static <T> void throwOnFailedValidation(T object, Class<?>... groups) throws ValidationException {
-        StringBuilder helper = new StringBuilder();
         Map<String, String> validationErrors = validate(object, groups);
         if (! validationErrors.isEmpty()) {
+            StringBuilder helper = new StringBuilder();
             validationErrors.forEach((key, value) -> helper.append(key)
                 .append("=")
                 .append(value)
@@ -56,7 +61,6 @@ public final class Validation {
      * @return
      */
     public static <T> Map<String, String> validate(T value, Class<?>... groups) {
-        Validator validator = validatorFactory.getValidator();
         if (!Objects.isNull(groups) || groups.length > 0) {
             return validator.validate(value, groups).stream()
                     .collect(Collectors.toMap(cv -> cv.getPropertyPath().toString(), ConstraintViolation::getMessage));
@@ -0,0 +1,42 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.locator.UseClasspathSqlLocator;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * SqlObject with classpath located SQL for the {@link KeysetPage} tests
+ */
+@UseClasspathSqlLocator
+@RegisterRowMapper(KeysetPostDAO.PostRowMapper.class)
+public interface KeysetPostDAO {
+    @SqlQuery
+    @KeysetPage(orderBy = {"score", "id"}, descending = true, size = 4)
+    Page<Post> findByScore(@Bind("userId") int userId, @PageToken String token);
+
+    class Post {
+        final int id;
+        final int score;
+        final String content;
+
+        Post(int id, int score, String content) {
+            this.id = id;
+            this.score = score;
+            this.content = content;
+        }
+    }
+
+    class PostRowMapper implements RowMapper<Post> {
+
+        @Override
+        public Post map(ResultSet resultSet, StatementContext statementContext) throws SQLException {
+            return new Post(resultSet.getInt("id"), resultSet.getInt("score"), resultSet.getString("content"));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.ValidationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link AsyncSqlObjects}
+ */
+public class TestAsyncSqlObjects {
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        hsql.after();
+    }
+
+    @Test
+    public void testShouldCallTheSqlObjectAsynchronously() throws Exception {
+        AsyncSqlObject<PersonDAO> people = AsyncSqlObjects.attach(hsql.getJdbi(), PersonDAO.class);
+
+        people.use(dao -> dao.insert(new Person("Zikani", "Nyirenda", "zikani@example.com"))).get(5, TimeUnit.SECONDS);
+        List<Person> found = people.call(PersonDAO::findAll).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, found.size());
+        assertEquals("Zikani", found.get(0).getFirstName());
+    }
+
+    @Test
+    public void testShouldImplementTheMirrorInterface() throws Exception {
+        AsyncPersonDAO people = AsyncSqlObjects.attach(hsql.getJdbi(), PersonDAO.class, AsyncPersonDAO.class);
+
+        people.insert(new Person("Zikani", "Nyirenda", "zikani@example.com")).get(5, TimeUnit.SECONDS);
+        Optional<Person> found = people.findAll().thenApply(all -> all.stream().findFirst()).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals("Nyirenda", found.get().getLastName());
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> people.insert(new Person("", "", null)).get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ValidationException);
+    }
+
+    @Test
+    public void testShouldCapConcurrency() throws Exception {
+        AsyncSqlObjects.setMaxConcurrency(hsql.getJdbi(), 2);
+        AsyncSqlObject<PersonDAO> people = AsyncSqlObjects.attach(hsql.getJdbi(), PersonDAO.class);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            calls.add(people.call(dao -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                TimeUnit.MILLISECONDS.sleep(50);
+                running.decrementAndGet();
+                return dao.findAll().size();
+            }));
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void testShouldKeepTheCapWhenItIsSetAgain() throws Exception {
+        AsyncSqlObjects.setMaxConcurrency(hsql.getJdbi(), 2);
+        AsyncSqlObject<PersonDAO> people = AsyncSqlObjects.attach(hsql.getJdbi(), PersonDAO.class);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            if (i == 4) {
+                AsyncSqlObjects.setMaxConcurrency(hsql.getJdbi(), 2);
+            }
+            calls.add(people.call(dao -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                release.await(5, TimeUnit.SECONDS);
+                running.decrementAndGet();
+                return dao.findAll().size();
+            }));
+        }
+        TimeUnit.MILLISECONDS.sleep(100);
+        release.countDown();
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void testShouldCallDefaultMethodsOfTheMirrorInterface() throws Exception {
+        AsyncPersonDAO people = AsyncSqlObjects.attach(hsql.getJdbi(), PersonDAO.class, AsyncPersonDAO.class);
+
+        people.insert(new Person("Zikani", "Nyirenda", "zikani@example.com")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Integer.valueOf(1), people.count().toCompletableFuture().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShouldRejectMethodsNotMirroringTheSqlObject() {
+        assertThrows(IllegalStateException.class, () -> AsyncSqlObjects.attach(hsql.getJdbi(), PersonDAO.class, BrokenAsyncPersonDAO.class));
+    }
+
+    public interface AsyncPersonDAO {
+        CompletableFuture<Integer> insert(Person person);
+
+        CompletionStage<List<Person>> findAll();
+
+        default CompletionStage<Integer> count() {
+            return findAll().thenApply(List::size);
+        }
+    }
+
+    public interface BrokenAsyncPersonDAO {
+        CompletableFuture<List<Person>> findEveryone();
+    }
+}
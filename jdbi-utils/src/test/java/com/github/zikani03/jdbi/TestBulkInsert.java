@@ -0,0 +1,112 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import javax.validation.ValidationException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the {@link BulkInsert} annotation
+ */
+public class TestBulkInsert {
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+        Handle h = hsql.getSharedHandle();
+        h.execute("create table posts(id integer primary key, content varchar(140), user_id integer, source varchar(20));");
+        h.execute("create table users(id identity primary key, posts_count integer);");
+        h.execute("INSERT INTO users(id, posts_count) VALUES (1, 0);");
+        h.execute("INSERT INTO users(id, posts_count) VALUES (2, 0);");
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        hsql.after();
+    }
+
+    private int count(String sql) {
+        return hsql.getSharedHandle().createQuery(sql).mapTo(Integer.class).findOnly();
+    }
+
+    private static Stream<TestCoalesce.Post> posts(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> new TestCoalesce.Post(i, "Post " + i, i % 4 == 0 ? 2 : 1));
+    }
+
+    @Test
+    public void testShouldInsertAStreamInChunksAndUpdateCounters() {
+        long rows = hsql.onDemand(PostDAO.class).insertAll(posts(0, 2500), "import");
+
+        assertEquals(2500, rows);
+        assertEquals(2500, count("SELECT COUNT(*) FROM posts WHERE source = 'import'"));
+        assertEquals(1875, count("SELECT posts_count FROM users WHERE id = 1"));
+        assertEquals(625, count("SELECT posts_count FROM users WHERE id = 2"));
+    }
+
+    @Test
+    public void testShouldInsertAnIterableAsABatch() {
+        int rows = hsql.onDemand(PostDAO.class).insertAllAsBatch(Arrays.asList(posts(0, 120).toArray(TestCoalesce.Post[]::new)));
+
+        assertEquals(120, rows);
+        assertEquals(120, count("SELECT COUNT(*) FROM posts"));
+        assertEquals(90, count("SELECT posts_count FROM users WHERE id = 1"));
+    }
+
+    @Test
+    public void testShouldInsertInTheCallersTransaction() {
+        Executable call = () -> hsql.getJdbi().useTransaction(h -> {
+            h.attach(PostDAO.class).insertAll(posts(0, 50), "import");
+            h.attach(PostDAO.class).insertAll(posts(49, 51), "import");
+        });
+
+        assertThrows(Exception.class, call);
+        assertEquals(0, count("SELECT COUNT(*) FROM posts"));
+        assertEquals(0, count("SELECT posts_count FROM users WHERE id = 1"));
+    }
+
+    @Test
+    public void testShouldValidateEveryRow() {
+        PeopleDAO dao = hsql.onDemand(PeopleDAO.class);
+        Iterator<Person> people = Arrays.asList(
+            new Person("Zikani", "Nyirenda", null),
+            new Person("", "Nobody", null)).iterator();
+
+        assertThrows(ValidationException.class, () -> dao.insertAll(people));
+        assertEquals(0, count("SELECT COUNT(*) FROM people"));
+    }
+
+    public interface PostDAO {
+        @SqlUpdate("INSERT INTO posts(id, content, user_id, source) VALUES (:p.id, :p.content, :p.userId, :source)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId")
+        @BulkInsert(initialChunkSize = 100, minChunkSize = 10)
+        long insertAll(@BindBean("p") Stream<TestCoalesce.Post> posts, @Bind("source") String source);
+
+        @SqlUpdate("INSERT INTO posts(id, content, user_id) VALUES (:p.id, :p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId")
+        @BulkInsert(initialChunkSize = 50, minChunkSize = 10, multiRowValues = false)
+        int insertAllAsBatch(@BindBean("p") Iterable<TestCoalesce.Post> posts);
+    }
+
+    public interface PeopleDAO {
+        @SqlUpdate("INSERT INTO people(firstName, lastName) VALUES (:firstName, :lastName)")
+        @BulkInsert(initialChunkSize = 10, minChunkSize = 1)
+        void insertAll(@BindBean @Valid Iterator<Person> people);
+    }
+}
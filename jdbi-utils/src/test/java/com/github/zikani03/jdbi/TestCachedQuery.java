@@ -0,0 +1,154 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for the {@link CachedQuery} and {@link InvalidatesCache} annotations
+ */
+public class TestCachedQuery {
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    public CachedPersonDAO dao;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+        dao = hsql.onDemand(CachedPersonDAO.class);
+        dao.insert(person(1, "John", "Phiri"));
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        hsql.after();
+    }
+
+    private static Person person(int id, String firstName, String lastName) {
+        Person person = new Person(firstName, lastName, firstName.toLowerCase() + "@gmail.com");
+        person.setId(id);
+        return person;
+    }
+
+    private QueryCache.Statistics statistics() {
+        return QueryCache.of(hsql.getJdbi()).getStatistics();
+    }
+
+    @Test
+    public void testShouldServeRepeatedQueriesFromCache() {
+        dao.get(1);
+        hsql.getSharedHandle().execute("UPDATE people SET firstName = 'Changed' WHERE id = 1");
+
+        Person cached = dao.get(1);
+
+        assertEquals("John", cached.getFirstName());
+        assertEquals(1, statistics().getHitCount());
+        assertEquals(1, statistics().getMissCount());
+    }
+
+    @Test
+    public void testShouldInvalidateWhenTableIsModified() {
+        assertEquals(1, dao.findAll().size());
+
+        dao.insert(person(2, "Jane", "Banda"));
+
+        assertEquals(2, dao.findAll().size());
+        assertEquals(1, statistics().getInvalidationCount());
+    }
+
+    @Test
+    public void testShouldNotCacheResultLoadedDuringInvalidation() throws Exception {
+        QueryCache cache = QueryCache.of(hsql.getJdbi());
+        Method get = CachedPersonDAO.class.getMethod("get", int.class);
+        CachedQuery config = get.getAnnotation(CachedQuery.class);
+
+        cache.get(get, config, new Object[]{1}, () -> {
+            cache.invalidate("people");
+            return "stale";
+        });
+
+        assertEquals("fresh", cache.get(get, config, new Object[]{1}, () -> "fresh"));
+        assertEquals(0, statistics().getHitCount());
+    }
+
+    @Test
+    public void testShouldNotCacheReadsInsideTransactions() {
+        hsql.getJdbi().useTransaction(h -> {
+            CachedPersonDAO inTransaction = h.attach(CachedPersonDAO.class);
+            inTransaction.insert(person(2, "Jane", "Banda"));
+            assertEquals("Jane", inTransaction.get(2).getFirstName());
+            h.rollback();
+        });
+
+        assertNull(dao.get(2));
+        assertEquals(0, statistics().getHitCount());
+    }
+
+    @Test
+    public void testShouldEvictLeastRecentlyUsed() {
+        dao.insert(person(2, "Jane", "Banda"));
+
+        dao.getWithSmallCache(1);
+        dao.getWithSmallCache(2);
+        dao.getWithSmallCache(1);
+
+        assertEquals(2, statistics().getEvictionCount());
+        assertEquals(0, statistics().getHitCount());
+    }
+
+    @Test
+    public void testShouldExpireAfterTtl() throws InterruptedException {
+        dao.getWithShortTtl(1);
+        TimeUnit.MILLISECONDS.sleep(50);
+        dao.getWithShortTtl(1);
+
+        assertEquals(1, statistics().getExpirationCount());
+        assertEquals(2, statistics().getMissCount());
+    }
+
+    @Test
+    public void testCachedListIsReadOnly() {
+        List<Person> people = dao.findAll();
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> people.clear());
+    }
+
+    @RegisterRowMapper(PersonDAO.PersonRowMapper.class)
+    public interface CachedPersonDAO {
+        @SqlUpdate("INSERT INTO people(id, firstName, lastName, email) VALUES (:p.id, :p.firstName, :p.lastName, :p.email)")
+        @InvalidatesCache("people")
+        void insert(@BindBean("p") Person person);
+
+        @SqlQuery("SELECT id, firstName, lastName, email, created, modified FROM people ORDER BY id")
+        @CachedQuery(tables = "people")
+        List<Person> findAll();
+
+        @SqlQuery("SELECT id, firstName, lastName, email, created, modified FROM people WHERE id = :id")
+        @CachedQuery(tables = "people")
+        Person get(@Bind("id") int id);
+
+        @SqlQuery("SELECT id, firstName, lastName, email, created, modified FROM people WHERE id = :id")
+        @CachedQuery(tables = "people", maxSize = 1)
+        Person getWithSmallCache(@Bind("id") int id);
+
+        @SqlQuery("SELECT id, firstName, lastName, email, created, modified FROM people WHERE id = :id")
+        @CachedQuery(tables = "people", ttl = 10, unit = TimeUnit.MILLISECONDS)
+        Person getWithShortTtl(@Bind("id") int id);
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.SqlLogger;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizer;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizerFactory;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizingAnnotation;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transactional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the {@link Coalesce} annotation
+ */
+public class TestCoalesce {
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    public PostDAO dao;
+
+    private final AtomicInteger insertsExecuted = new AtomicInteger();
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+        Handle h = hsql.getSharedHandle();
+        h.execute("create table posts(id integer primary key, content varchar(140), user_id integer);");
+        h.execute("create table users(id identity primary key, posts_count integer);");
+        h.execute("INSERT INTO users(id, posts_count) VALUES (1, 0);");
+        h.execute("INSERT INTO users(id, posts_count) VALUES (2, 0);");
+        hsql.getJdbi().getConfig(SqlStatements.class).setSqlLogger(new SqlLogger() {
+            @Override
+            public void logAfterExecution(StatementContext context) {
+                if (context.getRawSql().startsWith("INSERT INTO posts")) {
+                    insertsExecuted.incrementAndGet();
+                }
+            }
+        });
+        dao = hsql.onDemand(PostDAO.class);
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        hsql.after();
+    }
+
+    private List<Future<Integer>> insertConcurrently(ExecutorService executor, List<Post> posts) {
+        return insertConcurrently(executor, dao, posts);
+    }
+
+    private static List<Future<Integer>> insertConcurrently(ExecutorService executor, PostDAO dao, List<Post> posts) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (Post post : posts) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return dao.insert(post);
+            }));
+        }
+        start.countDown();
+        return futures;
+    }
+
+    private int postsCount(int userId) {
+        return hsql.getSharedHandle()
+            .createQuery("SELECT posts_count FROM users WHERE id = :id")
+            .bind("id", userId)
+            .mapTo(Integer.class)
+            .findOnly();
+    }
+
+    @Test
+    public void testShouldBatchConcurrentInsertsAndUpdateCounters() throws Exception {
+        List<Post> posts = new ArrayList<>();
+        for (int i = 1; i <= 30; i++) {
+            posts.add(new Post(i, "Post " + i, i % 3 == 0 ? 2 : 1));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(posts.size());
+        try {
+            for (Future<Integer> future : insertConcurrently(executor, posts)) {
+                assertEquals(Integer.valueOf(1), future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int rows = hsql.getSharedHandle().createQuery("SELECT COUNT(*) FROM posts").mapTo(Integer.class).findOnly();
+        assertEquals(30, rows);
+        assertEquals(20, postsCount(1));
+        assertEquals(10, postsCount(2));
+        assertTrue("Expected batches of several rows, executed " + insertsExecuted.get() + " inserts",
+            insertsExecuted.get() < posts.size());
+    }
+
+    @Test
+    public void testShouldFailOnlyTheCallerWithTheFailingRow() throws Exception {
+        List<Post> posts = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            posts.add(new Post(i, "Post " + i, 1));
+        }
+        posts.add(new Post(5, "Duplicate", 2));
+        ExecutorService executor = Executors.newFixedThreadPool(posts.size());
+        int failures = 0;
+        try {
+            for (Future<Integer> future : insertConcurrently(executor, posts)) {
+                try {
+                    assertEquals(Integer.valueOf(1), future.get(10, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof UnableToExecuteStatementException);
+                    failures++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, failures);
+        assertEquals(10, postsCount(1) + postsCount(2));
+    }
+
+    @Test
+    public void testShouldExecuteASingleCall() {
+        assertEquals(1, dao.insert(new Post(1, "Woo! Post content!", 1)));
+
+        assertEquals(1, postsCount(1));
+    }
+
+    @Test
+    public void testShouldRollBackWithTheCallersTransaction() {
+        assertThrows(IllegalStateException.class, () -> dao.useTransaction(d -> {
+            d.insert(new Post(1, "Rolled back", 1));
+            throw new IllegalStateException("Roll back");
+        }));
+
+        int rows = hsql.getSharedHandle().createQuery("SELECT COUNT(*) FROM posts").mapTo(Integer.class).findOnly();
+        assertEquals(0, rows);
+        assertEquals(0, postsCount(1));
+    }
+
+    @Test
+    public void testShouldOpenAHandleOnlyForTheLeaders() throws Exception {
+        AtomicInteger connections = new AtomicInteger();
+        Jdbi jdbi = Jdbi.create(() -> {
+            connections.incrementAndGet();
+            return hsql.getConnectionFactory().openConnection();
+        });
+        jdbi.installPlugin(new SqlObjectPlugin());
+        List<Post> posts = new ArrayList<>();
+        for (int i = 1; i <= 12; i++) {
+            posts.add(new Post(i, "Post " + i, 1));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(posts.size());
+        try {
+            for (Future<Integer> future : insertConcurrently(executor, jdbi.onDemand(PostDAO.class), posts)) {
+                assertEquals(Integer.valueOf(1), future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(12, postsCount(1));
+        assertTrue("Expected a connection per batch, opened " + connections.get(), connections.get() < posts.size());
+    }
+
+    @Test
+    public void testShouldApplyTheCustomizersOfTheSqlObjectType() {
+        TablePostDAO tableDao = hsql.onDemand(TablePostDAO.class);
+
+        assertEquals(1, tableDao.insert(new Post(1, "Woo! Post content!", 1)));
+
+        assertEquals(1, postsCount(1));
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @SqlStatementCustomizingAnnotation(PostsTable.Factory.class)
+    public @interface PostsTable {
+        String value();
+
+        class Factory implements SqlStatementCustomizerFactory {
+            @Override
+            public SqlStatementCustomizer createForType(Annotation annotation, Class<?> sqlObjectType) {
+                return statement -> statement.define("table", ((PostsTable) annotation).value());
+            }
+        }
+    }
+
+    @PostsTable("posts")
+    public interface TablePostDAO {
+        @SqlUpdate("INSERT INTO <table>(id, content, user_id) VALUES (:p.id, :p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId")
+        @Coalesce
+        int insert(@BindBean("p") Post post);
+    }
+
+    public static class Post {
+        private final long id;
+        private final String content;
+        private final long userId;
+
+        public Post(long id, String content, long userId) {
+            this.id = id;
+            this.content = content;
+            this.userId = userId;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+    }
+
+    public interface PostDAO extends Transactional<PostDAO> {
+        @SqlUpdate("INSERT INTO posts(id, content, user_id) VALUES (:p.id, :p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId")
+        @Coalesce(maxBatch = 16, maxDelayMicros = 20000)
+        int insert(@BindBean("p") Post post);
+    }
+}
@@ -0,0 +1,228 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link ContentionRetry}. A trigger on the counter table fails the counter updates with the SQLState
+ * of a lock timeout or a serialization failure as often as the test asks for.
+ */
+public class TestContentionRetry {
+
+    private static final AtomicInteger FAILURES = new AtomicInteger();
+
+    private static volatile String failureState = "41000";
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    private ContentionRetry retry;
+
+    /**
+     * Called by the trigger on the users table
+     */
+    public static int contend(int postsCount) throws SQLException {
+        if (FAILURES.getAndDecrement() > 0) {
+            throw new SQLException("Simulated contention", failureState);
+        }
+        return postsCount;
+    }
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+        Handle h = hsql.getSharedHandle();
+        h.execute("create table posts(id integer primary key, content varchar(140), user_id integer);");
+        h.execute("create table users(id identity primary key, posts_count integer);");
+        h.execute("CREATE FUNCTION contend(v INTEGER) RETURNS INTEGER LANGUAGE JAVA DETERMINISTIC NO SQL "
+            + "EXTERNAL NAME 'CLASSPATH:com.github.zikani03.jdbi.TestContentionRetry.contend'");
+        h.execute("CREATE TRIGGER users_contend BEFORE UPDATE ON users REFERENCING NEW ROW AS n FOR EACH ROW "
+            + "SET n.posts_count = contend(n.posts_count)");
+        h.execute("INSERT INTO users(id, posts_count) VALUES (1, 0);");
+        FAILURES.set(0);
+        failureState = "41000";
+        retry = hsql.getJdbi().getConfig(ContentionRetry.class)
+            .setBackoff(1, 5, TimeUnit.MILLISECONDS);
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        hsql.after();
+    }
+
+    private int postsCount() {
+        return hsql.getSharedHandle().createQuery("SELECT posts_count FROM users WHERE id = 1").mapTo(int.class).one();
+    }
+
+    @Test
+    public void testShouldRetryCounterUpdateOnLockTimeout() {
+        PostDAO dao = hsql.onDemand(PostDAO.class);
+        FAILURES.set(2);
+        dao.insert(new TestCoalesce.Post(1, "Post 1", 1));
+
+        hsql.getJdbi().useTransaction(h -> {
+            FAILURES.set(1);
+            h.attach(PostDAO.class).insert(new TestCoalesce.Post(2, "Post 2", 1));
+        });
+
+        assertEquals(2, postsCount());
+        assertEquals(2, hsql.getSharedHandle().createQuery("SELECT count(*) FROM posts").mapTo(int.class).one().intValue());
+        assertEquals(3, retry.getMetrics().getRetries());
+        assertEquals(0, retry.getMetrics().getGiveUps());
+    }
+
+    @Test
+    public void testShouldGiveUpAfterMaxRetries() {
+        retry.setMaxRetries(2);
+        PostDAO dao = hsql.onDemand(PostDAO.class);
+        FAILURES.set(3);
+
+        assertThrows(UnableToExecuteStatementException.class, () -> dao.insert(new TestCoalesce.Post(1, "Post 1", 1)));
+
+        assertEquals(0, postsCount());
+        assertEquals(2, retry.getMetrics().getRetries());
+        assertEquals(1, retry.getMetrics().getGiveUps());
+    }
+
+    @Test
+    public void testShouldGiveUpWhenRetryBudgetIsSpent() {
+        retry.setMaxRetries(10).setRetryBudget(0, 3);
+        PostDAO dao = hsql.onDemand(PostDAO.class);
+        FAILURES.set(5);
+
+        assertThrows(UnableToExecuteStatementException.class, () -> dao.insert(new TestCoalesce.Post(1, "Post 1", 1)));
+
+        assertEquals(3, retry.getMetrics().getRetries());
+        assertEquals(1, retry.getMetrics().getBudgetExhausted());
+    }
+
+    @Test
+    public void testShouldRetryTransactionOnSerializationFailure() {
+        ContentionRetry.retryTransactions(hsql.getJdbi());
+        failureState = "40001";
+        FAILURES.set(2);
+        AtomicInteger attempts = new AtomicInteger();
+
+        hsql.getJdbi().useTransaction(h -> {
+            attempts.incrementAndGet();
+            PostDAO dao = h.attach(PostDAO.class);
+            dao.insert(new TestCoalesce.Post(1, "Post 1", 1));
+            dao.insert(new TestCoalesce.Post(2, "Post 2", 1));
+        });
+
+        assertEquals(3, attempts.get());
+        assertEquals(2, postsCount());
+        assertEquals(2, retry.getMetrics().getRetries());
+    }
+
+    @Test
+    public void testShouldNotRetryOtherFailures() {
+        ContentionRetry.retryTransactions(hsql.getJdbi());
+        failureState = "22000";
+        FAILURES.set(1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(UnableToExecuteStatementException.class, () -> hsql.getJdbi().useTransaction(h -> {
+            attempts.incrementAndGet();
+            h.attach(PostDAO.class).insert(new TestCoalesce.Post(1, "Post 1", 1));
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, retry.getMetrics().getRetries());
+    }
+
+    @Test
+    public void testShouldNotRetryWhenTheStatementMayHaveCompleted() {
+        ContentionRetry.retryTransactions(hsql.getJdbi());
+        failureState = "40003";
+        FAILURES.set(1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(UnableToExecuteStatementException.class, () -> hsql.getJdbi().useTransaction(h -> {
+            attempts.incrementAndGet();
+            h.attach(PostDAO.class).insert(new TestCoalesce.Post(1, "Post 1", 1));
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, retry.getMetrics().getRetries());
+        assertEquals(ContentionRetry.Contention.NONE, ContentionRetry.classify(new SQLException("Constraint", "40002")));
+        assertEquals(ContentionRetry.Contention.TRANSACTION, ContentionRetry.classify(new SQLException("Deadlock", "40P01")));
+        assertEquals(ContentionRetry.Contention.TRANSACTION, ContentionRetry.classify(new SQLException("Lock timeout", "40XL1")));
+        assertEquals(ContentionRetry.Contention.TRANSACTION, ContentionRetry.classify(new SQLException("Deadlock", "HY000", 1213)));
+        assertEquals(ContentionRetry.Contention.STATEMENT, ContentionRetry.classify(new SQLException("Lock wait timeout", "HY000", 1205)));
+        assertEquals(ContentionRetry.Contention.NONE, ContentionRetry.classify(new SQLException("Duplicate entry", "HY000", 1062)));
+    }
+
+    @Test
+    public void testShouldNotRepeatTheUpdateWhenReadingTheNewValueFails() {
+        AtomicInteger selectFailures = new AtomicInteger(1);
+        Jdbi jdbi = Jdbi.create(() -> failingSelects(hsql.getConnectionFactory().openConnection(), selectFailures))
+            .installPlugin(new SqlObjectPlugin());
+        jdbi.getConfig(ContentionRetry.class).setBackoff(1, 5, TimeUnit.MILLISECONDS);
+        AtomicLong value = new AtomicLong();
+
+        jdbi.onDemand(PostDAO.class).insertReturning(new TestCoalesce.Post(1, "Post 1", 1), value::set);
+
+        assertEquals(0, selectFailures.get());
+        assertEquals(1, value.get());
+        assertEquals(1, postsCount());
+    }
+
+    /**
+     * Fails the <code>SELECT</code> reading the new counter value with a lock timeout as often as asked for
+     */
+    private static Connection failingSelects(Connection connection, AtomicInteger failures) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (!method.getName().equals("prepareStatement") || !((String) args[0]).startsWith("SELECT posts_count")) {
+                return result;
+            }
+            PreparedStatement statement = (PreparedStatement) result;
+            return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (p, m, a) -> {
+                if (m.getName().equals("executeQuery") && failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    throw new SQLException("Simulated lock timeout", "40XL1");
+                }
+                return invoke(statement, m, a);
+            });
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    public interface PostDAO {
+        @SqlUpdate("INSERT INTO posts(id, content, user_id) VALUES (:p.id, :p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", retryOnContention = true)
+        void insert(@BindBean("p") TestCoalesce.Post post);
+
+        @SqlUpdate("INSERT INTO posts(id, content, user_id) VALUES (:p.id, :p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", retryOnContention = true, returning = true)
+        void insertReturning(@BindBean("p") TestCoalesce.Post post, @CounterValue LongConsumer value);
+    }
+}
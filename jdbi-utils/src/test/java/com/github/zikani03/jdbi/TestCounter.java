@@ -1,14 +1,26 @@
 package com.github.zikani03.jdbi;
 
 import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.statement.StatementCustomizer;
+import org.jdbi.v3.core.statement.Update;
 import org.jdbi.v3.sqlobject.SqlObjectPlugin;
 import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.customizer.SqlStatementCustomizer;
 import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for the CounterCustomizer customizer
@@ -86,6 +98,80 @@ public class TestCounter {
         assertEquals(1, afterDeletingPost);
     }
 
+    @Test
+    public void testShouldReturnNewValue() {
+        CounterCustomizer counter = new CounterCustomizer("users", "posts_count", "author_id", "id", false, null, false, true);
+        Update update = hsql.getSharedHandle()
+            .createUpdate("INSERT INTO posts(content, user_id) VALUES (:content, :author_id)")
+            .bind("content", "Yay! Post content!")
+            .bind("author_id", 1)
+            .addCustomizer(counter);
+        update.execute();
+
+        assertEquals(OptionalLong.of(1), counter.getValue(update.getContext()));
+    }
+
+    @Test
+    public void testShouldPassNewValueToSqlObject() {
+        AtomicLong value = new AtomicLong(-1);
+        dao.insertReturning(new Post("Woo! Post content!", 1), value::set);
+        dao.insertReturning(new Post("Woo! More post content!", 1), value::set);
+        assertEquals(2, value.get());
+
+        value.set(-1);
+        dao.insertReturning(new Post("Nobody's post", 2), value::set);
+        assertEquals(-1, value.get());
+    }
+
+    @Test
+    public void testShouldReadNewValueInOneStatementWhereSupported() {
+        CounterCustomizer counter = new CounterCustomizer("users", "posts_count", "user_id", "id", true, null, false, true);
+
+        assertEquals(CounterCustomizer.Returning.RETURNING, CounterCustomizer.Returning.of("PostgreSQL"));
+        assertEquals("UPDATE users SET posts_count = posts_count - 1 WHERE id =  ? RETURNING posts_count",
+            counter.getReturningQuery(CounterCustomizer.Returning.RETURNING));
+        assertEquals(CounterCustomizer.Returning.FINAL_TABLE, CounterCustomizer.Returning.of("DB2/LINUXX8664"));
+        assertEquals("SELECT posts_count FROM FINAL TABLE (UPDATE users SET posts_count = posts_count - 1 WHERE id =  ?)",
+            counter.getReturningQuery(CounterCustomizer.Returning.FINAL_TABLE));
+        assertEquals(CounterCustomizer.Returning.OUTPUT, CounterCustomizer.Returning.of("Microsoft SQL Server"));
+        assertEquals("UPDATE users SET posts_count = posts_count - 1 OUTPUT inserted.posts_count WHERE id =  ?",
+            counter.getReturningQuery(CounterCustomizer.Returning.OUTPUT));
+        assertEquals(CounterCustomizer.Returning.SELECT, CounterCustomizer.Returning.of("HSQL Database Engine"));
+    }
+
+    @Test
+    public void testShouldReuseOneCustomizerAcrossStatements() throws Exception {
+        Method insert = PostDAO.class.getMethod("insert", Post.class);
+        SqlStatementCustomizer customizer = new Counter.Factory()
+            .createForMethod(insert.getAnnotation(Counter.class), PostDAO.class, insert);
+
+        RecordingUpdate first = new RecordingUpdate(hsql.getSharedHandle());
+        RecordingUpdate second = new RecordingUpdate(hsql.getSharedHandle());
+        customizer.apply(first);
+        customizer.apply(second);
+
+        assertEquals(1, first.added.size());
+        assertTrue(first.added.get(0) instanceof CounterCustomizer);
+        assertSame(first.added.get(0), second.added.get(0));
+    }
+
+    /**
+     * Records the customizers added to the statement
+     */
+    private static class RecordingUpdate extends Update {
+        final List<StatementCustomizer> added = new ArrayList<>();
+
+        RecordingUpdate(Handle handle) {
+            super(handle, "INSERT INTO posts(content, user_id) VALUES ('Recorded', 1)");
+        }
+
+        @Override
+        public Update addCustomizer(StatementCustomizer customizer) {
+            added.add(customizer);
+            return super.addCustomizer(customizer);
+        }
+    }
+
     public static class Post {
         private long id;
         private String content;
@@ -122,5 +208,9 @@ public class TestCounter {
         @SqlUpdate("DELETE FROM posts WHERE id = :p.id")
         @Counter(table = "users", column = "posts_count", binding = "p.userId", decrementing = true)
         void delete(@BindBean("p") Post post);
+
+        @SqlUpdate("INSERT INTO posts(content, user_id) VALUES (:p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", returning = true)
+        void insertReturning(@BindBean("p") Post post, @CounterValue LongConsumer value);
     }
 }
@@ -0,0 +1,234 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.BindBean;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link CounterRollup} with the {@link Counter} annotation
+ */
+public class TestCounterRollup {
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    private final MovableClock clock = new MovableClock(Instant.parse("2020-05-01T10:15:30Z"));
+
+    private CounterRollup rollup;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+        Handle h = hsql.getSharedHandle();
+        h.execute("create table posts(id integer primary key, content varchar(140), user_id integer);");
+        h.execute("create table users(id identity primary key, posts_count integer);");
+        h.execute("create table post_activity(counter_name varchar(100), counter_key varchar(100), granularity varchar(10), "
+            + "bucket_start timestamp, bucket_count bigint, primary key (counter_name, counter_key, granularity, bucket_start));");
+        h.execute("INSERT INTO users(id, posts_count) VALUES (1, 0);");
+        h.execute("INSERT INTO users(id, posts_count) VALUES (2, 0);");
+        rollup = CounterRollup.create(hsql.getJdbi(), "post_activity")
+            .setGranularities(ChronoUnit.MINUTES, ChronoUnit.HOURS)
+            .setFlushInterval(1, TimeUnit.HOURS)
+            .setClock(clock);
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        rollup.close();
+        hsql.after();
+    }
+
+    private List<String> buckets(String granularity) {
+        return hsql.getSharedHandle()
+            .createQuery("SELECT counter_key, bucket_start, bucket_count FROM post_activity "
+                + "WHERE counter_name = 'users.posts_count' AND granularity = :granularity ORDER BY bucket_start, counter_key")
+            .bind("granularity", granularity)
+            .map((rs, ctx) -> rs.getString(1) + "@" + rs.getTimestamp(2).toInstant() + "=" + rs.getLong(3))
+            .list();
+    }
+
+    private List<String> awaitBuckets(String granularity, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        List<String> buckets = buckets(granularity);
+        while (buckets.size() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+            buckets = buckets(granularity);
+        }
+        return buckets;
+    }
+
+    @Test
+    public void testShouldCountPerBucketAndFlushInBatches() {
+        PostDAO dao = hsql.onDemand(PostDAO.class);
+        for (int i = 1; i <= 5; i++) {
+            dao.insert(new TestCoalesce.Post(i, "Post " + i, i == 5 ? 2 : 1));
+        }
+        assertEquals(0, buckets("MINUTES").size());
+
+        clock.now = clock.now.plus(1, ChronoUnit.MINUTES);
+        dao.insert(new TestCoalesce.Post(6, "Post 6", 1));
+        dao.delete(new TestCoalesce.Post(1, null, 1));
+        rollup.flush();
+
+        assertEquals("[1@2020-05-01T10:15:00Z=4, 2@2020-05-01T10:15:00Z=1]", buckets("MINUTES").toString());
+        assertEquals("[1@2020-05-01T10:00:00Z=4, 2@2020-05-01T10:00:00Z=1]", buckets("HOURS").toString());
+
+        dao.insert(new TestCoalesce.Post(7, "Post 7", 2));
+        rollup.flush();
+
+        assertEquals("[1@2020-05-01T10:00:00Z=4, 2@2020-05-01T10:00:00Z=2]", buckets("HOURS").toString());
+    }
+
+    @Test
+    public void testShouldFlushWhenTooManyBucketsArePending() throws Exception {
+        rollup.setMaxPendingBuckets(4);
+        PostDAO dao = hsql.onDemand(PostDAO.class);
+        dao.insert(new TestCoalesce.Post(1, "Post 1", 1));
+        assertEquals(0, buckets("MINUTES").size());
+
+        dao.insert(new TestCoalesce.Post(2, "Post 2", 2));
+
+        assertEquals(2, awaitBuckets("MINUTES", 2).size());
+    }
+
+    @Test
+    public void testShouldFlushOnTheIntervalWithoutFurtherChanges() throws Exception {
+        hsql.onDemand(PostDAO.class).insert(new TestCoalesce.Post(1, "Post 1", 1));
+        assertEquals(0, buckets("MINUTES").size());
+
+        rollup.setFlushInterval(20, TimeUnit.MILLISECONDS);
+
+        assertEquals("[1@2020-05-01T10:15:00Z=1]", awaitBuckets("MINUTES", 1).toString());
+    }
+
+    @Test
+    public void testShouldRollUpBulkInserts() {
+        hsql.onDemand(PostDAO.class).insertAll(IntStream.rangeClosed(1, 30)
+            .mapToObj(i -> new TestCoalesce.Post(i, "Post " + i, i % 3 == 0 ? 2 : 1))
+            .collect(Collectors.toList()));
+        rollup.flush();
+
+        assertEquals("[1@2020-05-01T10:00:00Z=20, 2@2020-05-01T10:00:00Z=10]", buckets("HOURS").toString());
+    }
+
+    @Test
+    public void testShouldRefuseASecondRollupOfTheTableUntilTheFirstIsClosed() {
+        assertThrows(IllegalStateException.class, () -> CounterRollup.create(hsql.getJdbi(), "post_activity"));
+
+        rollup.close();
+        rollup = CounterRollup.create(hsql.getJdbi(), "post_activity").setClock(clock);
+        hsql.onDemand(PostDAO.class).insert(new TestCoalesce.Post(1, "Post 1", 1));
+        rollup.flush();
+
+        assertEquals("[1@2020-05-01T10:00:00Z=1]", buckets("HOURS").toString());
+    }
+
+    @Test
+    public void testShouldInsertBucketsWhenTheDriverReportsNoUpdateCounts() {
+        Jdbi noInfo = Jdbi.create(() -> noUpdateCounts(hsql.getConnectionFactory().openConnection()));
+        try (CounterRollup unknownCounts = CounterRollup.create(noInfo, "post_activity")
+                .setGranularities(ChronoUnit.HOURS)
+                .setFlushInterval(1, TimeUnit.HOURS)
+                .setClock(clock)) {
+            unknownCounts.record("users.posts_count", "1", 1);
+            unknownCounts.flush();
+            unknownCounts.record("users.posts_count", "1", 2);
+            unknownCounts.record("users.posts_count", "2", 1);
+            unknownCounts.flush();
+        }
+
+        assertEquals("[1@2020-05-01T10:00:00Z=3, 2@2020-05-01T10:00:00Z=1]", buckets("HOURS").toString());
+    }
+
+    /**
+     * Reports every statement of a batch as <code>Statement.SUCCESS_NO_INFO</code>, like some drivers do
+     */
+    private static Connection noUpdateCounts(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (!method.getName().equals("prepareStatement")) {
+                return result;
+            }
+            PreparedStatement statement = (PreparedStatement) result;
+            return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (p, m, a) -> {
+                Object value = invoke(statement, m, a);
+                if (m.getName().equals("executeBatch")) {
+                    int[] counts = (int[]) value;
+                    Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                }
+                return value;
+            });
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class MovableClock extends Clock {
+        Instant now;
+
+        MovableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    public interface PostDAO {
+        @SqlUpdate("INSERT INTO posts(id, content, user_id) VALUES (:p.id, :p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", rollupTable = "post_activity")
+        void insert(@BindBean("p") TestCoalesce.Post post);
+
+        @SqlUpdate("DELETE FROM posts WHERE id = :p.id")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", decrementing = true, rollupTable = "post_activity")
+        void delete(@BindBean("p") TestCoalesce.Post post);
+
+        @SqlUpdate("INSERT INTO posts(id, content, user_id) VALUES (:p.id, :p.content, :p.userId)")
+        @Counter(table = "users", column = "posts_count", binding = "p.userId", rollupTable = "post_activity")
+        @BulkInsert(initialChunkSize = 10, minChunkSize = 10)
+        void insertAll(@BindBean("p") Iterable<TestCoalesce.Post> posts);
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.mapper.MappingException;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the row mappers generated from {@link SqlQuery} return types
+ */
+public class TestGeneratedRowMappers {
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    public PeopleDAO dao;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+        hsql.getJdbi().installPlugin(new GeneratedRowMappersPlugin());
+        hsql.getSharedHandle().execute("INSERT INTO people(id, firstName, lastName, email) VALUES (1, 'John', 'Phiri', 'phiri@gmail.com')");
+        hsql.getSharedHandle().execute("INSERT INTO people(id, firstName, lastName, email) VALUES (2, 'Jane', 'Banda', null)");
+        dao = hsql.onDemand(PeopleDAO.class);
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        hsql.after();
+    }
+
+    @Test
+    public void testShouldMapWithConstructorAndSetters() {
+        Person expected = new Person("John", "Phiri", "phiri@gmail.com");
+        expected.setId(1);
+
+        Person got = dao.get(1);
+
+        assertEquals(expected, got);
+    }
+
+    @Test
+    public void testShouldMapBeanWithNullsAndMissingColumns() {
+        List<Contact> contacts = dao.findContacts();
+
+        assertEquals(2, contacts.size());
+        assertEquals(Integer.valueOf(1), contacts.get(0).getId());
+        assertEquals("phiri@gmail.com", contacts.get(0).getEmailAddress());
+        assertNull(contacts.get(1).getEmailAddress());
+        assertNull(contacts.get(1).getNickname());
+    }
+
+    @Test
+    public void testShouldMapOptional() {
+        Optional<Contact> contact = dao.findContact(2);
+
+        assertTrue(contact.isPresent());
+        assertEquals(Integer.valueOf(2), contact.get().getId());
+    }
+
+    @Test
+    public void testShouldFailWithMappingExceptionOnMissingConstructorColumn() {
+        MappingException e = assertThrows(MappingException.class, () -> dao.getWithoutEmail(1));
+
+        assertTrue(e.getMessage(), e.getMessage().contains("'email'"));
+    }
+
+    public static class Contact {
+        private Integer id;
+        private String emailAddress;
+        private String nickname;
+
+        public Integer getId() {
+            return id;
+        }
+
+        public void setId(Integer id) {
+            this.id = id;
+        }
+
+        public String getEmailAddress() {
+            return emailAddress;
+        }
+
+        public void setEmailAddress(String emailAddress) {
+            this.emailAddress = emailAddress;
+        }
+
+        public String getNickname() {
+            return nickname;
+        }
+
+        public void setNickname(String nickname) {
+            this.nickname = nickname;
+        }
+    }
+
+    public interface PeopleDAO {
+        @SqlQuery("SELECT id, firstName, lastName, email, created, modified FROM people WHERE id = :id")
+        Person get(@Bind("id") int id);
+
+        @SqlQuery("SELECT id, firstName, lastName FROM people WHERE id = :id")
+        Person getWithoutEmail(@Bind("id") int id);
+
+        @SqlQuery("SELECT id, email AS email_address FROM people ORDER BY id")
+        List<Contact> findContacts();
+
+        @SqlQuery("SELECT id, email AS email_address FROM people WHERE id = :id")
+        Optional<Contact> findContact(@Bind("id") int id);
+    }
+}
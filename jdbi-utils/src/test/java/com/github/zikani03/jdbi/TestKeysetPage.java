@@ -0,0 +1,125 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.customizer.Define;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the {@link KeysetPage} annotation
+ */
+public class TestKeysetPage {
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+        Handle h = hsql.getSharedHandle();
+        h.execute("create table posts(id integer primary key, user_id integer, score integer, content varchar(140));");
+        for (int i = 1; i <= 50; i++) {
+            h.execute("INSERT INTO posts(id, user_id, score, content) VALUES (?, ?, ?, ?)", i, i % 2 + 1, i % 5, "Post " + i);
+        }
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        hsql.after();
+    }
+
+    @Test
+    public void testShouldPageThroughAllResults() {
+        PostDAO dao = hsql.onDemand(PostDAO.class);
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String token = null;
+        do {
+            Page<Integer> page = dao.findIdsByUser(1, token);
+            page.forEach(ids::add);
+            pageSizes.add(page.getItems().size());
+            token = page.getNextToken();
+        } while (token != null);
+
+        assertEquals(hsql.getSharedHandle().createQuery("SELECT id FROM posts WHERE user_id = 1 ORDER BY id")
+            .mapTo(Integer.class).list(), ids);
+        assertEquals("[10, 10, 5]", pageSizes.toString());
+    }
+
+    @Test
+    public void testShouldPageByClasspathSqlWithSeveralDescendingColumns() {
+        KeysetPostDAO dao = hsql.onDemand(KeysetPostDAO.class);
+        List<Integer> ids = new ArrayList<>();
+        Page<KeysetPostDAO.Post> page = dao.findByScore(2, null);
+        page.forEach(p -> ids.add(p.id));
+        while (page.hasNext()) {
+            page = dao.findByScore(2, page.getNextToken());
+            page.forEach(p -> ids.add(p.id));
+        }
+
+        assertEquals(hsql.getSharedHandle().createQuery("SELECT id FROM posts WHERE user_id = 2 ORDER BY score DESC, id DESC")
+            .mapTo(Integer.class).list(), ids);
+    }
+
+    @Test
+    public void testShouldReturnAnEmptyLastPage() {
+        Page<Integer> page = hsql.onDemand(PostDAO.class).findIdsByUser(3, null);
+
+        assertEquals(0, page.getItems().size());
+        assertFalse(page.hasNext());
+        assertNull(page.getNextToken());
+    }
+
+    @Test
+    public void testShouldApplyTheOtherCustomizers() {
+        PostDAO dao = hsql.onDemand(PostDAO.class);
+        Page<Integer> first = dao.findIdsIn("posts", 1, null);
+        Page<Integer> second = dao.findIdsIn("posts", 1, first.getNextToken());
+
+        assertEquals("[2, 4, 6, 8, 10, 12, 14, 16, 18, 20]", first.getItems().toString());
+        assertEquals("[22, 24, 26, 28, 30, 32, 34, 36, 38, 40]", second.getItems().toString());
+    }
+
+    @Test
+    public void testShouldAllowOrderByInSubqueries() {
+        Page<Integer> page = hsql.onDemand(PostDAO.class).findTopScoredIds(null);
+
+        assertEquals("[4, 9, 14, 19, 24]", page.getItems().toString());
+        assertNull(page.getNextToken());
+    }
+
+    @Test
+    public void testShouldRejectMalformedTokens() {
+        PostDAO dao = hsql.onDemand(PostDAO.class);
+        Executable call = () -> dao.findIdsByUser(1, "not-a-token");
+
+        assertThrows(IllegalArgumentException.class, call);
+    }
+
+    public interface PostDAO {
+        @SqlQuery("SELECT id FROM posts WHERE user_id = :userId")
+        @KeysetPage(orderBy = "id", size = 10)
+        Page<Integer> findIdsByUser(@Bind("userId") int userId, @PageToken String token);
+
+        @SqlQuery("SELECT id FROM <table> WHERE user_id = :userId")
+        @KeysetPage(orderBy = "id", size = 10)
+        Page<Integer> findIdsIn(@Define("table") String table, @Bind("userId") int userId, @PageToken String token);
+
+        @SqlQuery("SELECT id FROM posts WHERE id IN (SELECT id FROM posts ORDER BY score DESC, id LIMIT 5)")
+        @KeysetPage(orderBy = "id", size = 10)
+        Page<Integer> findTopScoredIds(@PageToken String token);
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.jdbi.v3.sqlobject.statement.SqlUpdate;
+import org.jdbi.v3.sqlobject.transaction.Transactional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link RoutingJdbi} and the {@link ReadOnly} annotation, with a database per instance
+ * that says which one it is
+ */
+public class TestRoutingJdbi {
+
+    public HsqldbDatabaseRule primary = new HsqldbDatabaseRule();
+    public HsqldbDatabaseRule replica1 = new HsqldbDatabaseRule();
+    public HsqldbDatabaseRule replica2 = new HsqldbDatabaseRule();
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        setUp(primary, "primary");
+        setUp(replica1, "replica1");
+        setUp(replica2, "replica2");
+    }
+
+    private void setUp(HsqldbDatabaseRule db, String name) throws Exception {
+        db.before();
+        db.getJdbi().installPlugin(new SqlObjectPlugin());
+        Handle h = db.getSharedHandle();
+        h.execute("create table servers(name varchar(20));");
+        h.execute("INSERT INTO servers(name) VALUES (?)", name);
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        primary.after();
+        replica1.after();
+        replica2.after();
+    }
+
+    @Test
+    public void testShouldBalanceReadsOverReplicas() {
+        ServerDAO dao = RoutingJdbi.create(primary.getJdbi(), replica1.getJdbi(), replica2.getJdbi()).onDemand(ServerDAO.class);
+        List<String> servers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            servers.add(dao.readFromReplica());
+        }
+
+        assertEquals("[replica1, replica2, replica1, replica2]", servers.toString());
+        assertEquals("primary", dao.readFromPrimary());
+    }
+
+    @Test
+    public void testShouldReadYourWritesFromThePrimary() throws Exception {
+        RoutingJdbi db = RoutingJdbi.create(primary.getJdbi(), replica1.getJdbi())
+            .setReadYourWritesWindow(200, TimeUnit.MILLISECONDS);
+        ServerDAO dao = db.onDemand(ServerDAO.class);
+
+        dao.rename("primary");
+        assertEquals("primary", dao.readFromReplica());
+
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertEquals("replica1", dao.readFromReplica());
+
+        db.useTransaction(h -> h.attach(ServerDAO.class).rename("primary"));
+        assertEquals("primary", dao.readFromReplica());
+    }
+
+    @Test
+    public void testShouldRouteSqlObjectsCreatedFromThePrimary() {
+        RoutingJdbi.create(primary.getJdbi(), replica1.getJdbi());
+
+        assertEquals("replica1", primary.getJdbi().onDemand(ServerDAO.class).readFromReplica());
+    }
+
+    @Test
+    public void testShouldTreatQueriesThatChangeDataAsWrites() {
+        assertTrue(RoutingJdbi.isWriteSql("INSERT INTO servers(name) VALUES ('a') RETURNING name"));
+        assertTrue(RoutingJdbi.isWriteSql("SELECT name FROM FINAL TABLE (UPDATE servers SET name = 'b')"));
+        assertTrue(RoutingJdbi.isWriteSql("with moved as (delete from servers returning name) select * from moved"));
+        assertTrue(RoutingJdbi.isWriteSql("SELECT name FROM servers FOR UPDATE"));
+        assertFalse(RoutingJdbi.isWriteSql(" select name, updated_at FROM servers"));
+        assertFalse(RoutingJdbi.isWriteSql("WITH s AS (SELECT name FROM servers) SELECT * FROM s"));
+    }
+
+    @Test
+    public void testShouldReadFromThePrimaryInATransaction() {
+        RoutingJdbi db = RoutingJdbi.create(primary.getJdbi(), replica1.getJdbi());
+
+        String server = db.inTransaction(h -> h.attach(ServerDAO.class).readFromReplica());
+
+        assertEquals("primary", server);
+    }
+
+    @Test
+    public void testShouldReadYourUncommittedWritesFromThePrimary() {
+        RoutingJdbi db = RoutingJdbi.create(primary.getJdbi(), replica1.getJdbi());
+        ServerDAO dao = db.onDemand(ServerDAO.class);
+
+        String server = dao.inTransaction(d -> {
+            d.rename("written");
+            assertTrue(db.isPinnedToPrimary());
+            return d.readFromReplica();
+        });
+
+        assertEquals("written", server);
+    }
+
+    @Test
+    public void testShouldFallBackWhenReplicasAreDown() {
+        Jdbi down = Jdbi.create(() -> {
+            throw new SQLException("Replica is down");
+        });
+        down.installPlugin(new SqlObjectPlugin());
+        ServerDAO dao = RoutingJdbi.create(primary.getJdbi(), down, replica1.getJdbi()).onDemand(ServerDAO.class);
+
+        assertEquals("replica1", dao.readFromReplica());
+        assertEquals("replica1", dao.readFromReplica());
+    }
+
+    public interface ServerDAO extends Transactional<ServerDAO> {
+        @SqlQuery("SELECT name FROM servers")
+        @ReadOnly
+        String readFromReplica();
+
+        @SqlQuery("SELECT name FROM servers")
+        String readFromPrimary();
+
+        @SqlUpdate("UPDATE servers SET name = :name")
+        void rename(@Bind("name") String name);
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.SqlStatements;
+import org.jdbi.v3.sqlobject.SqlObject;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link ShardedJdbi}, with users spread over three databases by id
+ */
+public class TestShardedJdbi {
+
+    public HsqldbDatabaseRule shard0 = new HsqldbDatabaseRule();
+    public HsqldbDatabaseRule shard1 = new HsqldbDatabaseRule();
+    public HsqldbDatabaseRule shard2 = new HsqldbDatabaseRule();
+
+    private ShardedJdbi shards;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        shards = ShardedJdbi.create(setUp(shard0, 0), setUp(shard1, 1), setUp(shard2, 2))
+            .setShardFunction(key -> ((Number) key).intValue());
+    }
+
+    private Jdbi setUp(HsqldbDatabaseRule db, int shard) throws Exception {
+        db.before();
+        db.getJdbi().installPlugin(new SqlObjectPlugin());
+        Handle h = db.getSharedHandle();
+        h.execute("create table users(id integer primary key, name varchar(20));");
+        for (int id = shard; id < 12; id += 3) {
+            h.execute("INSERT INTO users(id, name) VALUES (?, ?)", id, "User " + id);
+        }
+        return db.getJdbi();
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        shards.close();
+        shard0.after();
+        shard1.after();
+        shard2.after();
+    }
+
+    @Test
+    public void testShouldMergeTheResultsOfAllShards() {
+        List<Integer> sorted = shards.fanOut(UserDAO.class).mergeSorted(UserDAO::findIdsDescending, Comparator.reverseOrder());
+        List<Integer> concatenated = shards.fanOut(UserDAO.class).concat(UserDAO::findIdsDescending);
+        long count = shards.fanOut(UserDAO.class).collect(UserDAO::count, Collectors.summingLong(Long::longValue));
+
+        assertEquals("[11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1, 0]", sorted.toString());
+        assertEquals("[9, 6, 3, 0, 10, 7, 4, 1, 11, 8, 5, 2]", concatenated.toString());
+        assertEquals(12, count);
+    }
+
+    @Test
+    public void testShouldQueryOnlyTheShardsOfTheKeys() {
+        List<Integer> ids = shards.fanOut(UserDAO.class).onKeys(Arrays.asList(3, 9, 5)).concat(UserDAO::findIdsDescending);
+
+        assertEquals("[9, 6, 3, 0, 11, 8, 5, 2]", ids.toString());
+        assertEquals(shard1.getJdbi(), shards.onShard(4));
+    }
+
+    @Test
+    public void testShouldQueryTheShardsInParallel() {
+        CountDownLatch running = new CountDownLatch(3);
+        List<Boolean> overlapped = shards.fanOut(UserDAO.class).collect(dao -> {
+            dao.count();
+            running.countDown();
+            return running.await(5, TimeUnit.SECONDS);
+        }, Collectors.toList());
+
+        assertEquals("[true, true, true]", overlapped.toString());
+    }
+
+    @Test
+    public void testShouldShutDownTheDefaultPoolOnClose() {
+        shards.close();
+
+        assertThrows(RejectedExecutionException.class, () -> shards.fanOut(UserDAO.class).concat(UserDAO::findIdsDescending));
+    }
+
+    @Test
+    public void testShouldKeepTheShardsQueryTimeoutWithoutAShardTimeout() {
+        shard0.getJdbi().getConfig(SqlStatements.class).setQueryTimeout(7);
+        List<Integer> noTimeout = shards.fanOut(UserDAO.class).onKeys(Collections.singleton(0)).concat(UserDAO::queryTimeout);
+
+        shards.setShardTimeout(2500, TimeUnit.MILLISECONDS);
+        List<Integer> shardTimeout = shards.fanOut(UserDAO.class).onKeys(Collections.singleton(0)).concat(UserDAO::queryTimeout);
+
+        assertEquals("[7]", noTimeout.toString());
+        assertEquals("[3]", shardTimeout.toString());
+    }
+
+    @Test
+    public void testShouldApplyTheFailurePolicy() {
+        shards.setShardTimeout(200, TimeUnit.MILLISECONDS);
+        UserCall slowShard = dao -> {
+            if (dao.findIdsDescending().contains(11)) {
+                TimeUnit.SECONDS.sleep(5);
+            }
+            return dao.findIdsDescending();
+        };
+
+        ShardFailureException e = assertThrows(ShardFailureException.class, () -> shards.fanOut(UserDAO.class).concat(slowShard::call));
+        assertEquals(Collections.singleton(2), e.getFailures().keySet());
+
+        shards.setFailurePolicy(ShardedJdbi.FailurePolicy.SKIP_FAILED);
+        assertEquals("[9, 6, 3, 0, 10, 7, 4, 1]", shards.fanOut(UserDAO.class).concat(slowShard::call).toString());
+    }
+
+    @FunctionalInterface
+    private interface UserCall {
+        List<Integer> call(UserDAO dao) throws Exception;
+    }
+
+    public interface UserDAO extends SqlObject {
+        @SqlQuery("SELECT id FROM users ORDER BY id DESC")
+        List<Integer> findIdsDescending();
+
+        @SqlQuery("SELECT COUNT(*) FROM users")
+        long count();
+
+        default List<Integer> queryTimeout() {
+            return Collections.singletonList(getHandle().getConfig(SqlStatements.class).getQueryTimeout());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.customizer.Bind;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the {@link SingleFlight} annotation
+ */
+public class TestSingleFlight {
+    static final AtomicInteger executions = new AtomicInteger();
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    public SlowDAO dao;
+
+    /**
+     * Called by the database to make a query slow enough to overlap
+     */
+    public static int slowly(int value) throws InterruptedException {
+        executions.incrementAndGet();
+        TimeUnit.MILLISECONDS.sleep(300);
+        return value;
+    }
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+        hsql.getSharedHandle().execute("CREATE FUNCTION slowly(v INT) RETURNS INT LANGUAGE JAVA NOT DETERMINISTIC NO SQL "
+            + "EXTERNAL NAME 'CLASSPATH:com.github.zikani03.jdbi.TestSingleFlight.slowly'");
+        executions.set(0);
+        dao = hsql.onDemand(SlowDAO.class);
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        hsql.after();
+    }
+
+    private List<Integer> callConcurrently(int threads, int... values) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final int value = values[i % values.length];
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return dao.slowValue(value);
+                }));
+            }
+            start.countDown();
+            List<Integer> results = new ArrayList<>();
+            for (Future<Integer> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShouldRunConcurrentIdenticalQueriesOnce() throws Exception {
+        List<Integer> results = callConcurrently(8, 42);
+
+        assertEquals(1, executions.get());
+        results.forEach(r -> assertEquals(Integer.valueOf(42), r));
+    }
+
+    @Test
+    public void testShouldNotCoalesceDifferentArguments() throws Exception {
+        List<Integer> results = callConcurrently(8, 1, 2);
+
+        assertEquals(2, executions.get());
+        assertEquals(Integer.valueOf(1), results.get(0));
+        assertEquals(Integer.valueOf(2), results.get(1));
+    }
+
+    @Test
+    public void testShouldRunAgainOnceTheFlightHasLanded() {
+        dao.slowValue(7);
+        dao.slowValue(7);
+
+        assertEquals(2, executions.get());
+    }
+
+    public interface SlowDAO {
+        @SqlQuery("SELECT slowly(:v) FROM (VALUES(0))")
+        @SingleFlight
+        int slowValue(@Bind("v") int value);
+    }
+}
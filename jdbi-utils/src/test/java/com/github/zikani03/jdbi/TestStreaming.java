@@ -0,0 +1,116 @@
+package com.github.zikani03.jdbi;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import org.jdbi.v3.sqlobject.SqlObjectPlugin;
+import org.jdbi.v3.sqlobject.config.RegisterRowMapper;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for the {@link Streaming} annotation
+ */
+public class TestStreaming {
+
+    public HsqldbDatabaseRule hsql = new HsqldbDatabaseRule();
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        hsql.before();
+        hsql.getJdbi().installPlugin(new SqlObjectPlugin());
+        Handle h = hsql.getSharedHandle();
+        h.execute("create table numbers(n integer primary key);");
+        h.execute("INSERT INTO numbers(n) SELECT c FROM UNNEST(SEQUENCE_ARRAY(1, 250, 1)) AS t(c)");
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        hsql.after();
+    }
+
+    @Test
+    public void testShouldSetFetchSizeAndTurnOffAutoCommitWhileStreaming() throws Exception {
+        try (Handle h = hsql.openHandle()) {
+            NumberDAO dao = h.attach(NumberDAO.class);
+            try (Stream<String> rows = dao.streamAll()) {
+                List<String> states = rows.distinct().collect(Collectors.toList());
+                assertEquals(1, states.size());
+                assertEquals("fetchSize=100 autoCommit=false", states.get(0));
+            }
+            assertTrue(h.getConnection().getAutoCommit());
+            assertFalse(h.isInTransaction());
+        }
+    }
+
+    @Test
+    public void testShouldLeaveTransactionsOpen() {
+        hsql.getJdbi().useTransaction(h -> {
+            NumberDAO dao = h.attach(NumberDAO.class);
+            try (Stream<String> rows = dao.streamAll()) {
+                assertEquals(250, rows.count());
+            }
+            assertTrue(h.isInTransaction());
+        });
+    }
+
+    @Test
+    public void testShouldRollBackWhenTheQueryFails() throws Exception {
+        try (Handle h = hsql.openHandle()) {
+            NumberDAO dao = h.attach(NumberDAO.class);
+
+            assertThrows(UnableToExecuteStatementException.class, () -> dao.streamQuotients().close());
+
+            assertTrue(h.getConnection().getAutoCommit());
+            assertFalse(h.isInTransaction());
+        }
+    }
+
+    @Test
+    public void testShouldReturnAllRows() {
+        try (Handle h = hsql.openHandle()) {
+            try (Stream<Integer> numbers = h.attach(NumberDAO.class).streamNumbers()) {
+                assertEquals(250 * 251 / 2, numbers.mapToInt(Integer::intValue).sum());
+            }
+        }
+    }
+
+    public interface NumberDAO {
+        @SqlQuery("SELECT n FROM numbers ORDER BY n")
+        @Streaming(fetchSize = 100)
+        Stream<Integer> streamNumbers();
+
+        @SqlQuery("SELECT n FROM numbers ORDER BY n")
+        @Streaming(fetchSize = 100)
+        @RegisterRowMapper(StateMapper.class)
+        Stream<String> streamAll();
+
+        @SqlQuery("SELECT n / (n - n) FROM numbers")
+        @Streaming(fetchSize = 100)
+        Stream<Integer> streamQuotients();
+    }
+
+    /**
+     * Maps each row to the fetch size and auto-commit mode in effect while it is read
+     */
+    public static class StateMapper implements RowMapper<String> {
+        @Override
+        public String map(ResultSet rs, StatementContext ctx) throws SQLException {
+            return "fetchSize=" + rs.getStatement().getFetchSize() + " autoCommit=" + ctx.getConnection().getAutoCommit();
+        }
+    }
+}
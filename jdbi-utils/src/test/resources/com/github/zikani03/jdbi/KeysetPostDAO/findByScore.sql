@@ -0,0 +1 @@
+SELECT id, score, content FROM posts WHERE user_id = :userId
@@ -6,8 +6,11 @@ import org.jdbi.v3.sqlobject.statement.SqlUpdate;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
@@ -15,19 +18,49 @@ import javax.tools.Diagnostic;
 import javax.tools.FileObject;
 import javax.tools.StandardLocation;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * Annotation processor for the paranoid.
  * Checks if an SQL File exists for an SqlObject annotated with
  * {@link UseClasspathSqlLocator}
+ *
+ * When the <code>jdbi.checker.schema</code> option is set, the DDL script it points to is loaded
+ * into an in-memory HSQLDB database and every located SQL statement is prepared and explained against it.
+ * Statements that fail to prepare are reported as errors; full scans on the tables listed in the
+ * <code>jdbi.checker.largeTables</code> option are reported with the severity set by
+ * <code>jdbi.checker.fullScanSeverity</code> (<code>WARNING</code> by default).
+ *
+ * Methods annotated with <code>@KeysetPage</code>, with classpath located or inline SQL, are checked for a
+ * top-level <code>ORDER BY</code>, <code>LIMIT</code> or <code>OFFSET</code> of their own, and the paged query is
+ * the one that is explained.
  */
 public class ClasspathSqlCheckerProcessor extends AbstractProcessor {
+    static final String OPTION_SCHEMA = "jdbi.checker.schema";
+    static final String OPTION_LARGE_TABLES = "jdbi.checker.largeTables";
+    static final String OPTION_FULL_SCAN_SEVERITY = "jdbi.checker.fullScanSeverity";
+    static final String KEYSET_PAGE = "com.github.zikani03.jdbi.KeysetPage";
+
+    private static final Pattern PAGING_CLAUSE = Pattern.compile("\\b(ORDER\\s+BY|LIMIT|OFFSET|FETCH\\s+FIRST)\\b", Pattern.CASE_INSENSITIVE);
+
     // private Types typeUtils;
     private Elements elementUtils;
     private Filer filer;
     private Messager messager;
+    private QueryPlanChecker planChecker;
+    private java.lang.reflect.Method keysetPageSql;
+    private Diagnostic.Kind fullScanSeverity = Diagnostic.Kind.WARNING;
 
     @SuppressWarnings("unused")
     public ClasspathSqlCheckerProcessor() {
@@ -37,9 +70,15 @@ public class ClasspathSqlCheckerProcessor extends AbstractProcessor {
     public Set<String> getSupportedAnnotationTypes() {
         Set<String> annotations = new HashSet<>();
         annotations.add(UseClasspathSqlLocator.class.getCanonicalName());
+        annotations.add(KEYSET_PAGE);
         return annotations;
     }
 
+    @Override
+    public Set<String> getSupportedOptions() {
+        return new HashSet<>(Arrays.asList(OPTION_SCHEMA, OPTION_LARGE_TABLES, OPTION_FULL_SCAN_SEVERITY));
+    }
+
     @Override
     public SourceVersion getSupportedSourceVersion() {
         return SourceVersion.latestSupported();
@@ -52,10 +91,44 @@ public class ClasspathSqlCheckerProcessor extends AbstractProcessor {
         elementUtils = env.getElementUtils();
         filer = env.getFiler();
         messager = env.getMessager();
+
+        String schema = env.getOptions().get(OPTION_SCHEMA);
+        if (schema == null || schema.trim().isEmpty()) {
+            return;
+        }
+        String severity = env.getOptions().get(OPTION_FULL_SCAN_SEVERITY);
+        if (severity != null) {
+            fullScanSeverity = "ERROR".equalsIgnoreCase(severity.trim()) ? Diagnostic.Kind.ERROR : Diagnostic.Kind.WARNING;
+        }
+        String largeTables = env.getOptions().getOrDefault(OPTION_LARGE_TABLES, "");
+        try {
+            planChecker = new QueryPlanChecker(
+                readSchema(schema.trim()),
+                Arrays.asList(largeTables.isEmpty() ? new String[0] : largeTables.split(",")),
+                getClass().getClassLoader());
+        } catch (IOException | SQLException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                String.format("ClasspathSqlChecker could not load schema '%s': %s", schema, e.getMessage()));
+        }
+    }
+
+    /**
+     * Reads the schema from the file system, falling back to the class path
+     */
+    private CharSequence readSchema(String schema) throws IOException {
+        Path path = Paths.get(schema);
+        if (Files.isRegularFile(path)) {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        }
+        return filer.getResource(StandardLocation.CLASS_PATH, "", schema).getCharContent(true);
     }
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        if (env.processingOver()) {
+            closePlanChecker();
+            return false;
+        }
         ElementKind annotatedElementKind = null;
         for(Element annotatedElement : env.getElementsAnnotatedWith(UseClasspathSqlLocator.class)) {
             annotatedElementKind = annotatedElement.getKind();
@@ -92,6 +165,14 @@ public class ClasspathSqlCheckerProcessor extends AbstractProcessor {
                         env.errorRaised();
                         break;
                     }
+                    String sql = data.toString();
+                    AnnotationMirror keysetPage = findAnnotation(member, KEYSET_PAGE);
+                    if (keysetPage != null) {
+                        sql = checkKeysetPage(sql, "SQL file: " + sqlFilename, member, keysetPage);
+                    }
+                    if (planChecker != null && sql != null) {
+                        checkPlan(sql, "SQL file: " + sqlFilename, member);
+                    }
                 } catch(IOException ioe) {
                     messager.printMessage(Diagnostic.Kind.ERROR,
                         String.format("ClasspathSqlChecker could not find or load SQL file: %s", sqlFilename),
@@ -102,6 +183,178 @@ public class ClasspathSqlCheckerProcessor extends AbstractProcessor {
                 }
             }
         }
+        processInlineKeysetPages(env);
         return false;
     }
+
+    /**
+     * Checks <code>@KeysetPage</code> methods of SqlObjects that don't use the classpath locator
+     */
+    private void processInlineKeysetPages(RoundEnvironment env) {
+        TypeElement keysetPageType = elementUtils.getTypeElement(KEYSET_PAGE);
+        if (keysetPageType == null) {
+            return;
+        }
+        for (Element method : env.getElementsAnnotatedWith(keysetPageType)) {
+            if (method.getEnclosingElement().getAnnotation(UseClasspathSqlLocator.class) != null) {
+                continue;
+            }
+            String source = method.getEnclosingElement().getSimpleName() + "." + method.getSimpleName();
+            SqlQuery query = method.getAnnotation(SqlQuery.class);
+            String sql = query == null ? "" : query.value();
+            if (query != null && sql.isEmpty()) {
+                continue;
+            }
+            sql = checkKeysetPage(sql, "@SqlQuery of " + source, method, findAnnotation(method, KEYSET_PAGE));
+            if (planChecker != null && sql != null) {
+                checkPlan(sql, "@SqlQuery of " + source, method);
+            }
+        }
+    }
+
+    /**
+     * @return the paged SQL to check the plan of, or null if the method is not a valid <code>@KeysetPage</code> method
+     */
+    private String checkKeysetPage(String sql, String source, Element method, AnnotationMirror keysetPage) {
+        if (method.getAnnotation(SqlQuery.class) == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                "ClasspathSqlChecker found @KeysetPage on a method that is not an @SqlQuery", method);
+            return null;
+        }
+        if (hasPagingClause(sql)) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                String.format("ClasspathSqlChecker found ORDER BY, LIMIT or OFFSET in %s, @KeysetPage adds its own", source),
+                method);
+            return null;
+        }
+        List<String> orderBy = new ArrayList<>();
+        boolean descending = false;
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : elementUtils.getElementValuesWithDefaults(keysetPage).entrySet()) {
+            String name = value.getKey().getSimpleName().toString();
+            if ("orderBy".equals(name)) {
+                for (Object column : (List<?>) value.getValue().getValue()) {
+                    orderBy.add(String.valueOf(((AnnotationValue) column).getValue()));
+                }
+            } else if ("descending".equals(name)) {
+                descending = (Boolean) value.getValue().getValue();
+            }
+        }
+        if (orderBy.isEmpty()) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "ClasspathSqlChecker found @KeysetPage without orderBy columns", method);
+            return null;
+        }
+        return planChecker == null ? sql : keysetPageSql(sql, orderBy, descending, method);
+    }
+
+    /**
+     * The query a <code>@KeysetPage</code> method runs for any page after the first, built by
+     * <code>KeysetPage.Factory#pageSql</code> when jdbi-utils is on the annotation processor path. Without it the
+     * SQL is explained as it is.
+     */
+    private String keysetPageSql(String sql, List<String> orderBy, boolean descending, Element method) {
+        if (keysetPageSql == null) {
+            try {
+                keysetPageSql = Class.forName(KEYSET_PAGE + "$Factory", true, getClass().getClassLoader())
+                    .getMethod("pageSql", String.class, String[].class, boolean.class, boolean.class);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                messager.printMessage(Diagnostic.Kind.NOTE,
+                    "ClasspathSqlChecker explains @KeysetPage SQL without paging, jdbi-utils is not on the annotation processor path",
+                    method);
+                return sql;
+            }
+        }
+        try {
+            return (String) keysetPageSql.invoke(null, sql, orderBy.toArray(new String[0]), descending, true);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not build the page query of " + method, e);
+        }
+    }
+
+    /**
+     * Finds an <code>ORDER BY</code>, <code>LIMIT</code>, <code>OFFSET</code> or <code>FETCH FIRST</code> of the
+     * statement itself. Subqueries and window functions, e.g. <code>ROW_NUMBER() OVER (ORDER BY id)</code>, may
+     * have their own.
+     */
+    static boolean hasPagingClause(String sql) {
+        return PAGING_CLAUSE.matcher(topLevel(sql)).find();
+    }
+
+    /**
+     * Blanks out quoted text, comments and everything in parentheses
+     */
+    private static String topLevel(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        char quote = 0;
+        int depth = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            char next = i + 1 < sql.length() ? sql.charAt(i + 1) : 0;
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                c = ' ';
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                c = ' ';
+            } else if (c == '-' && next == '-') {
+                while (i + 1 < sql.length() && sql.charAt(i + 1) != '\n') {
+                    i++;
+                }
+                c = ' ';
+            } else if (c == '/' && next == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 1;
+                c = ' ';
+            } else if (c == '(') {
+                depth++;
+                c = ' ';
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                c = ' ';
+            } else if (depth > 0) {
+                c = ' ';
+            }
+            out.append(c);
+        }
+        return out.toString();
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (annotationType.equals(mirror.getAnnotationType().toString())) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private void checkPlan(String sql, String source, Element method) {
+        try {
+            for (String table : planChecker.check(sql)) {
+                messager.printMessage(fullScanSeverity,
+                    String.format("ClasspathSqlChecker found a full table scan on %s in %s", table, source),
+                    method
+                );
+            }
+        } catch (SQLException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                String.format("ClasspathSqlChecker could not prepare %s: %s", source, e.getMessage()),
+                method
+            );
+        }
+    }
+
+    private void closePlanChecker() {
+        if (planChecker == null) {
+            return;
+        }
+        try {
+            planChecker.close();
+        } catch (SQLException e) {
+            messager.printMessage(Diagnostic.Kind.WARNING,
+                "ClasspathSqlChecker could not shut down the schema database: " + e.getMessage());
+        }
+        planChecker = null;
+    }
 }
@@ -0,0 +1,188 @@
+package com.github.zikani03.jdbi.processor;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Loads a DDL script into an in-process HSQLDB database and runs <code>EXPLAIN PLAN</code>
+ * on SQL statements against it.
+ *
+ * The HSQLDB driver is loaded reflectively so that it only needs to be on the annotation processor
+ * path when the plan check is enabled.
+ */
+public final class QueryPlanChecker implements AutoCloseable {
+    static final String HSQLDB_DRIVER = "org.hsqldb.jdbc.JDBCDriver";
+
+    private static final String FULL_SCAN = "access=FULL SCAN";
+    private static final String TABLE_PREFIX = "table=";
+
+    private final Connection connection;
+    private final Set<String> largeTables;
+
+    /**
+     *
+     * @param ddl - The DDL script to create the schema with, statements must be terminated with a semicolon
+     * @param largeTables - Names of the tables that must not be fully scanned
+     * @param classLoader - The class loader to load the HSQLDB driver from
+     * @throws SQLException if the database cannot be created or the DDL fails to execute
+     */
+    public QueryPlanChecker(CharSequence ddl, Collection<String> largeTables, ClassLoader classLoader) throws SQLException {
+        this.connection = connect(classLoader);
+        this.largeTables = new HashSet<>();
+        largeTables.forEach(t -> this.largeTables.add(t.trim().toUpperCase(Locale.ROOT)));
+
+        try (Statement s = connection.createStatement()) {
+            for (String statement : splitStatements(ddl)) {
+                s.execute(statement);
+            }
+        }
+    }
+
+    private static Connection connect(ClassLoader classLoader) throws SQLException {
+        Driver driver;
+        try {
+            driver = (Driver) Class.forName(HSQLDB_DRIVER, true, classLoader).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new SQLException("HSQLDB must be on the annotation processor path to check query plans", e);
+        }
+        Connection con = driver.connect("jdbc:hsqldb:mem:plancheck-" + UUID.randomUUID(), new Properties());
+        if (con == null) {
+            throw new SQLException("HSQLDB driver did not accept the in-memory database url");
+        }
+        return con;
+    }
+
+    /**
+     * Prepares the statement and explains its plan.
+     *
+     * @param sql - SQL statement using Jdbi's named (<code>:name</code>) or positional parameters
+     * @return the names of the configured large tables that the statement scans in full
+     * @throws SQLException if the statement does not parse against the schema
+     */
+    public Set<String> check(String sql) throws SQLException {
+        String jdbcSql = toPositionalParameters(sql);
+        connection.prepareStatement(jdbcSql).close();
+
+        Set<String> fullScans = new HashSet<>();
+        try (Statement s = connection.createStatement();
+             ResultSet rs = s.executeQuery("EXPLAIN PLAN FOR " + jdbcSql)) {
+            String table = null;
+            while (rs.next()) {
+                for (String line : rs.getString(1).split("\n")) {
+                    line = line.trim();
+                    if (line.startsWith(TABLE_PREFIX)) {
+                        table = line.substring(TABLE_PREFIX.length());
+                    } else if (line.startsWith(FULL_SCAN) && table != null && largeTables.contains(table)) {
+                        fullScans.add(table);
+                    }
+                }
+            }
+        }
+        return fullScans;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (Statement s = connection.createStatement()) {
+            s.execute("SHUTDOWN");
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Replaces Jdbi named parameters with JDBC positional parameters, leaving quoted text
+     * and <code>::</code> casts alone.
+     */
+    static String toPositionalParameters(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        char quote = 0;
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                out.append(c);
+                i++;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                out.append(c);
+                i++;
+            } else if (c == ':' && i + 1 < sql.length() && sql.charAt(i + 1) == ':') {
+                out.append("::");
+                i += 2;
+            } else if (c == ':' && i + 1 < sql.length() && isNameStart(sql.charAt(i + 1))) {
+                i++;
+                while (i < sql.length() && isNamePart(sql.charAt(i))) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString().trim();
+    }
+
+    private static boolean isNameStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private static boolean isNamePart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+
+    /**
+     * Splits a script into statements on semicolons outside of quoted text.
+     */
+    static List<String> splitStatements(CharSequence script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '-' && i + 1 < script.length() && script.charAt(i + 1) == '-') {
+                while (i + 1 < script.length() && script.charAt(i + 1) != '\n') {
+                    i++;
+                }
+                // the comment separates the tokens around it
+                current.append(' ');
+                continue;
+            } else if (c == ';') {
+                addStatement(statements, current);
+                continue;
+            }
+            current.append(c);
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+}
@@ -0,0 +1,489 @@
+package com.github.zikani03.jdbi.processor;
+
+import org.jdbi.v3.core.mapper.reflect.ColumnName;
+import org.jdbi.v3.core.mapper.reflect.JdbiConstructor;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a {@link org.jdbi.v3.core.mapper.RowMapper} for the return type of each {@link SqlQuery} method.
+ *
+ * The generated mappers resolve column indexes once per <code>ResultSet</code> and then call the constructor
+ * and setters of the mapped type directly, without reflection. They are listed in
+ * <code>META-INF/jdbi-utils/generated-row-mappers</code> so that the <code>GeneratedRowMappersPlugin</code>
+ * from jdbi-utils can register them, and no other mappers on the class path.
+ *
+ * Types qualify when they are public, concrete, top-level or static nested classes with either a
+ * {@link JdbiConstructor}, a single public constructor or a public no-argument constructor. Types that use
+ * <code>&#64;Nested</code>, <code>&#64;Nullable</code> or <code>&#64;PropertyName</code> are left to Jdbi's own
+ * mappers. Generation is turned off unless enabled with <code>-Ajdbi.generateRowMappers=true</code>.
+ */
+public class RowMapperGeneratorProcessor extends AbstractProcessor {
+    static final String OPTION_GENERATE = "jdbi.generateRowMappers";
+    static final String INDEX_FILE = "META-INF/jdbi-utils/generated-row-mappers";
+    static final String MAPPER_SUFFIX = "_RowMapper";
+
+    /**
+     * Simple names of the annotations Jdbi's reflection mappers honour and the generated mappers do not
+     */
+    private static final Set<String> UNSUPPORTED_ANNOTATIONS = new HashSet<>(Arrays.asList("Nested", "Nullable", "PropertyName"));
+
+    private static final Set<String> CONTAINER_TYPES = new HashSet<>(Arrays.asList(
+        "java.lang.Iterable",
+        "java.util.Collection",
+        "java.util.List",
+        "java.util.Set",
+        "java.util.Iterator",
+        "java.util.Optional",
+        "java.util.stream.Stream",
+        "org.jdbi.v3.core.result.ResultIterable",
+        "org.jdbi.v3.core.result.ResultIterator"
+    ));
+
+    /**
+     * JDBC getters for the types that can be read without a column mapper
+     */
+    private static final Map<String, String> GETTERS = new HashMap<>();
+    static {
+        GETTERS.put("int", "getInt");
+        GETTERS.put("long", "getLong");
+        GETTERS.put("short", "getShort");
+        GETTERS.put("byte", "getByte");
+        GETTERS.put("boolean", "getBoolean");
+        GETTERS.put("double", "getDouble");
+        GETTERS.put("float", "getFloat");
+        GETTERS.put("java.lang.String", "getString");
+        GETTERS.put("java.math.BigDecimal", "getBigDecimal");
+        GETTERS.put("java.sql.Timestamp", "getTimestamp");
+        GETTERS.put("java.sql.Date", "getDate");
+        GETTERS.put("java.sql.Time", "getTime");
+        GETTERS.put("byte[]", "getBytes");
+    }
+
+    /**
+     * Boxed types are read with the getter of their primitive and checked with <code>wasNull</code>
+     */
+    private static final Map<String, String> BOXED = new HashMap<>();
+    static {
+        BOXED.put("java.lang.Integer", "getInt");
+        BOXED.put("java.lang.Long", "getLong");
+        BOXED.put("java.lang.Short", "getShort");
+        BOXED.put("java.lang.Byte", "getByte");
+        BOXED.put("java.lang.Boolean", "getBoolean");
+        BOXED.put("java.lang.Double", "getDouble");
+        BOXED.put("java.lang.Float", "getFloat");
+    }
+
+    private Elements elementUtils;
+    private Types typeUtils;
+    private Filer filer;
+    private Messager messager;
+    private boolean enabled;
+    private final Set<String> processedTypes = new HashSet<>();
+    private final SortedSet<String> generatedMappers = new TreeSet<>();
+
+    @SuppressWarnings("unused")
+    public RowMapperGeneratorProcessor() {
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(SqlQuery.class.getCanonicalName());
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_GENERATE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+        super.init(env);
+        elementUtils = env.getElementUtils();
+        typeUtils = env.getTypeUtils();
+        filer = env.getFiler();
+        messager = env.getMessager();
+        enabled = "true".equalsIgnoreCase(env.getOptions().get(OPTION_GENERATE));
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        if (!enabled) {
+            return false;
+        }
+        if (env.processingOver()) {
+            writeIndexFile();
+            return false;
+        }
+        for (Element method : env.getElementsAnnotatedWith(SqlQuery.class)) {
+            if (method.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            TypeElement mapped = mappedType(((ExecutableElement) method).getReturnType());
+            if (mapped == null || !processedTypes.add(mapped.getQualifiedName().toString())) {
+                continue;
+            }
+            MappedType mappedType = describe(mapped);
+            if (mappedType != null) {
+                generate(mappedType, method);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unwraps the element type of container return types and returns the mapped class, or null
+     * if the return type is not a candidate for a generated mapper.
+     */
+    private TypeElement mappedType(TypeMirror returnType) {
+        TypeMirror type = returnType;
+        if (type.getKind() == TypeKind.ARRAY) {
+            type = ((ArrayType) type).getComponentType();
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement element = (TypeElement) declared.asElement();
+        if (CONTAINER_TYPES.contains(element.getQualifiedName().toString())) {
+            if (declared.getTypeArguments().size() != 1) {
+                return null;
+            }
+            return mappedType(declared.getTypeArguments().get(0));
+        }
+        return isCandidate(element) ? element : null;
+    }
+
+    private boolean isCandidate(TypeElement element) {
+        String name = element.getQualifiedName().toString();
+        if (name.startsWith("java.") || name.startsWith("javax.")) {
+            return false;
+        }
+        if (element.getKind() != ElementKind.CLASS
+            || element.getModifiers().contains(Modifier.ABSTRACT)
+            || !element.getTypeParameters().isEmpty()) {
+            return false;
+        }
+        for (Element e = element; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            TypeElement type = (TypeElement) e;
+            if (!type.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+            if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+                return false;
+            }
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private MappedType describe(TypeElement element) {
+        ExecutableElement constructor = constructor(element);
+        if (constructor == null) {
+            return null;
+        }
+        if (usesUnsupportedAnnotations(element)) {
+            messager.printMessage(Diagnostic.Kind.NOTE, "RowMapperGenerator skipped " + element.getQualifiedName()
+                + ", it uses @Nested, @Nullable or @PropertyName", element);
+            return null;
+        }
+        MappedType mapped = new MappedType(element);
+        for (VariableElement param : constructor.getParameters()) {
+            String name = param.getSimpleName().toString();
+            if (name.matches("arg\\d+")) {
+                // parameter names were not retained for a binary class
+                return null;
+            }
+            mapped.constructorArgs.add(new Property(name, columnName(param, name), param.asType(), null));
+        }
+
+        Set<String> covered = new HashSet<>();
+        mapped.constructorArgs.forEach(p -> covered.add(normalize(p.name)));
+        for (ExecutableElement method : ElementFilter.methodsIn(elementUtils.getAllMembers(element))) {
+            String methodName = method.getSimpleName().toString();
+            if (!methodName.startsWith("set") || methodName.length() < 4
+                || method.getParameters().size() != 1
+                || method.getReturnType().getKind() != TypeKind.VOID
+                || !method.getModifiers().contains(Modifier.PUBLIC)
+                || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            String property = decapitalize(methodName.substring(3));
+            if (!covered.add(normalize(property))) {
+                continue;
+            }
+            mapped.setters.add(new Property(property, columnName(method, property),
+                method.getParameters().get(0).asType(), methodName));
+        }
+
+        if (mapped.constructorArgs.isEmpty() && mapped.setters.isEmpty()) {
+            return null;
+        }
+        return mapped;
+    }
+
+    private static boolean usesUnsupportedAnnotations(TypeElement element) {
+        Set<Element> members = new LinkedHashSet<>(element.getEnclosedElements());
+        for (Element e = element; e instanceof TypeElement; ) {
+            TypeMirror superclass = ((TypeElement) e).getSuperclass();
+            e = superclass.getKind() == TypeKind.DECLARED ? ((DeclaredType) superclass).asElement() : null;
+            if (e != null) {
+                members.addAll(e.getEnclosedElements());
+            }
+        }
+        for (Element member : members) {
+            if (isUnsupportedAnnotated(member)) {
+                return true;
+            }
+            if (member instanceof ExecutableElement) {
+                for (VariableElement param : ((ExecutableElement) member).getParameters()) {
+                    if (isUnsupportedAnnotated(param)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUnsupportedAnnotated(Element element) {
+        return element.getAnnotationMirrors().stream()
+            .anyMatch(a -> UNSUPPORTED_ANNOTATIONS.contains(a.getAnnotationType().asElement().getSimpleName().toString()));
+    }
+
+    /**
+     * Prefers a constructor annotated with {@link JdbiConstructor}, then a single public constructor
+     * and finally a public no-argument constructor.
+     */
+    private ExecutableElement constructor(TypeElement element) {
+        List<ExecutableElement> constructors = new ArrayList<>();
+        for (ExecutableElement c : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (c.getAnnotation(JdbiConstructor.class) != null) {
+                return c;
+            }
+            if (c.getModifiers().contains(Modifier.PUBLIC)) {
+                constructors.add(c);
+            }
+        }
+        if (constructors.size() == 1) {
+            return constructors.get(0);
+        }
+        return constructors.stream()
+            .filter(c -> c.getParameters().isEmpty())
+            .findFirst()
+            .orElse(null);
+    }
+
+    private static String columnName(Element element, String defaultName) {
+        ColumnName columnName = element.getAnnotation(ColumnName.class);
+        return columnName == null ? defaultName : columnName.value();
+    }
+
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private void generate(MappedType mapped, Element origin) {
+        String packageName = elementUtils.getPackageOf(mapped.element).getQualifiedName().toString();
+        String typeName = mapped.element.getQualifiedName().toString();
+        String binaryName = elementUtils.getBinaryName(mapped.element).toString();
+        String simpleName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1).replace('$', '_');
+        String mapperName = simpleName + MAPPER_SUFFIX;
+        String qualifiedMapperName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+
+        List<Property> properties = new ArrayList<>(mapped.constructorArgs);
+        properties.addAll(mapped.setters);
+
+        StringBuilder src = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            src.append("package ").append(packageName).append(";\n\n");
+        }
+        src.append("/**\n")
+            .append(" * Row mapper for {@link ").append(typeName).append("}.\n")
+            .append(" * Generated by ").append(getClass().getName()).append(", do not edit.\n")
+            .append(" */\n")
+            .append("public final class ").append(mapperName)
+            .append(" implements org.jdbi.v3.core.mapper.RowMapper<").append(typeName).append("> {\n\n")
+            .append("    @Override\n")
+            .append("    public ").append(typeName).append(" map(java.sql.ResultSet rs, org.jdbi.v3.core.statement.StatementContext ctx) throws java.sql.SQLException {\n")
+            .append("        return specialize(rs, ctx).map(rs, ctx);\n")
+            .append("    }\n\n")
+            .append("    @Override\n")
+            .append("    public org.jdbi.v3.core.mapper.RowMapper<").append(typeName).append("> specialize(java.sql.ResultSet rs, org.jdbi.v3.core.statement.StatementContext ctx) throws java.sql.SQLException {\n")
+            .append("        final java.sql.ResultSetMetaData meta = rs.getMetaData();\n");
+
+        for (int i = 0; i < properties.size(); i++) {
+            Property p = properties.get(i);
+            boolean required = i < mapped.constructorArgs.size();
+            src.append("        final int c").append(i).append(" = columnIndex(meta, \"")
+                .append(escape(p.column)).append("\", ").append(required).append(");\n");
+            if (getterFor(p.type) == null) {
+                String columnType = columnMapperType(p.type);
+                src.append("        final org.jdbi.v3.core.mapper.ColumnMapper<").append(columnType).append("> m").append(i)
+                    .append(" = c").append(i).append(" < 1 ? null : ctx.findColumnMapperFor(").append(typeToken(p.type, columnType))
+                    .append(").orElseThrow(() -> new IllegalStateException(\"No column mapper registered for ")
+                    .append(escape(columnType)).append("\"));\n");
+            }
+        }
+
+        src.append("        return (r, x) -> {\n")
+            .append("            final ").append(typeName).append(" o = new ").append(typeName).append("(");
+        for (int i = 0; i < mapped.constructorArgs.size(); i++) {
+            src.append(i == 0 ? "" : ", ").append(readExpression(properties.get(i), i));
+        }
+        src.append(");\n");
+        for (int i = mapped.constructorArgs.size(); i < properties.size(); i++) {
+            Property p = properties.get(i);
+            src.append("            if (c").append(i).append(" > 0) {\n")
+                .append("                o.").append(p.setter).append("(").append(readExpression(p, i)).append(");\n")
+                .append("            }\n");
+        }
+        src.append("            return o;\n")
+            .append("        };\n")
+            .append("    }\n\n")
+            .append("    private static int columnIndex(java.sql.ResultSetMetaData meta, String name, boolean required) throws java.sql.SQLException {\n")
+            .append("        final String wanted = name.replace(\"_\", \"\");\n")
+            .append("        for (int i = 1; i <= meta.getColumnCount(); i++) {\n")
+            .append("            if (meta.getColumnLabel(i).replace(\"_\", \"\").equalsIgnoreCase(wanted)) {\n")
+            .append("                return i;\n")
+            .append("            }\n")
+            .append("        }\n")
+            .append("        if (required) {\n")
+            .append("            throw new org.jdbi.v3.core.mapper.MappingException(\"No column '\" + name + \"' for constructor parameter of ")
+            .append(escape(typeName)).append("\");\n")
+            .append("        }\n")
+            .append("        return -1;\n")
+            .append("    }\n\n")
+            .append("    private static <T> T nullable(T value, java.sql.ResultSet rs) throws java.sql.SQLException {\n")
+            .append("        return rs.wasNull() ? null : value;\n")
+            .append("    }\n")
+            .append("}\n");
+
+        try {
+            JavaFileObject file = filer.createSourceFile(qualifiedMapperName, mapped.element);
+            try (Writer w = file.openWriter()) {
+                w.write(src.toString());
+            }
+            generatedMappers.add(qualifiedMapperName);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                String.format("RowMapperGenerator could not write mapper %s: %s", qualifiedMapperName, e.getMessage()),
+                origin);
+        }
+    }
+
+    private String readExpression(Property p, int index) {
+        String type = typeUtils.erasure(p.type).toString();
+        if (GETTERS.containsKey(type)) {
+            return "r." + GETTERS.get(type) + "(c" + index + ")";
+        }
+        if (BOXED.containsKey(type)) {
+            return "nullable(r." + BOXED.get(type) + "(c" + index + "), r)";
+        }
+        return "m" + index + ".map(r, c" + index + ", x)";
+    }
+
+    private String getterFor(TypeMirror type) {
+        String name = typeUtils.erasure(type).toString();
+        return GETTERS.containsKey(name) ? GETTERS.get(name) : BOXED.get(name);
+    }
+
+    private String columnMapperType(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return typeUtils.boxedClass((javax.lang.model.type.PrimitiveType) type).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    private String typeToken(TypeMirror type, String columnType) {
+        if (type.getKind() == TypeKind.DECLARED && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+            return "new org.jdbi.v3.core.generic.GenericType<" + columnType + ">() {}";
+        }
+        return typeUtils.erasure(type.getKind().isPrimitive()
+            ? typeUtils.boxedClass((javax.lang.model.type.PrimitiveType) type).asType()
+            : type) + ".class";
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void writeIndexFile() {
+        if (generatedMappers.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            try (Writer w = file.openWriter()) {
+                for (String mapper : generatedMappers) {
+                    w.write(mapper);
+                    w.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                "RowMapperGenerator could not write " + INDEX_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private static final class MappedType {
+        final TypeElement element;
+        final List<Property> constructorArgs = new ArrayList<>();
+        final List<Property> setters = new ArrayList<>();
+
+        MappedType(TypeElement element) {
+            this.element = element;
+        }
+    }
+
+    private static final class Property {
+        final String name;
+        final String column;
+        final TypeMirror type;
+        final String setter;
+
+        Property(String name, String column, TypeMirror type, String setter) {
+            this.name = name;
+            this.column = column;
+            this.type = type;
+            this.setter = setter;
+        }
+    }
+}
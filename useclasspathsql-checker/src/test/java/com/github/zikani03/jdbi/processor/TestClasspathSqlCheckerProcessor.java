@@ -0,0 +1,30 @@
+package com.github.zikani03.jdbi.processor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ClasspathSqlCheckerProcessor}
+ */
+public class TestClasspathSqlCheckerProcessor {
+
+    @Test
+    public void testShouldFindPagingClausesOfTheStatement() {
+        assertTrue(ClasspathSqlCheckerProcessor.hasPagingClause("SELECT id FROM posts ORDER BY id"));
+        assertTrue(ClasspathSqlCheckerProcessor.hasPagingClause("SELECT id FROM posts\nlimit 10"));
+        assertTrue(ClasspathSqlCheckerProcessor.hasPagingClause("SELECT id FROM (SELECT id FROM posts) p OFFSET 5"));
+        assertTrue(ClasspathSqlCheckerProcessor.hasPagingClause("SELECT id FROM posts FETCH FIRST 5 ROWS ONLY"));
+    }
+
+    @Test
+    public void testShouldAllowPagingClausesOfSubqueriesAndWindows() {
+        assertFalse(ClasspathSqlCheckerProcessor.hasPagingClause(
+            "SELECT id, ROW_NUMBER() OVER (ORDER BY score DESC) AS score_rank FROM posts"));
+        assertFalse(ClasspathSqlCheckerProcessor.hasPagingClause(
+            "SELECT id FROM posts WHERE id IN (SELECT id FROM posts ORDER BY score LIMIT 5)"));
+        assertFalse(ClasspathSqlCheckerProcessor.hasPagingClause(
+            "SELECT id FROM posts WHERE content <> 'order by' -- limit\n/* offset */"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.zikani03.jdbi.processor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link QueryPlanChecker}
+ */
+public class TestQueryPlanChecker {
+
+    private static final String DDL = "-- the posts of the users\n"
+        + "CREATE TABLE posts(id INTEGER PRIMARY KEY, content VARCHAR(140), user_id INTEGER);\n"
+        + "CREATE INDEX posts_user_id ON posts(user_id); -- looked up by user\n"
+        + "CREATE TABLE tags(name VARCHAR(20));";
+
+    private QueryPlanChecker checker;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        checker = new QueryPlanChecker(DDL, Arrays.asList("posts", " Tags "), getClass().getClassLoader());
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        checker.close();
+    }
+
+    @Test
+    public void testShouldKeepTokensApartAroundComments() {
+        assertEquals(Collections.singletonList("SELECT x \nFROM posts"),
+            QueryPlanChecker.splitStatements("SELECT x-- the column\nFROM posts"));
+        assertEquals(Arrays.asList("SELECT 1 FROM a", "SELECT 2 FROM b"),
+            QueryPlanChecker.splitStatements("SELECT 1 FROM a; -- first; not a statement\nSELECT 2 FROM b; -- last"));
+    }
+
+    @Test
+    public void testShouldNotSplitOnSemicolonsInQuotes() {
+        assertEquals(Arrays.asList("INSERT INTO tags VALUES ('a;b')", "SELECT \"x;y\" FROM t", "SELECT '--' FROM t"),
+            QueryPlanChecker.splitStatements("INSERT INTO tags VALUES ('a;b');SELECT \"x;y\" FROM t;\nSELECT '--' FROM t"));
+    }
+
+    @Test
+    public void testShouldReplaceNamedParameters() {
+        assertEquals("SELECT * FROM posts WHERE user_id = ? AND content <> ':content' AND id = ?::int",
+            QueryPlanChecker.toPositionalParameters("SELECT * FROM posts WHERE user_id = :p.userId AND content <> ':content' AND id = :id::int "));
+    }
+
+    @Test
+    public void testShouldFindFullScansOfLargeTables() throws Exception {
+        assertEquals(Collections.singleton("POSTS"), checker.check("SELECT * FROM posts WHERE content = :content"));
+        assertEquals(Collections.singleton("TAGS"), checker.check("SELECT name FROM tags"));
+    }
+
+    @Test
+    public void testShouldAcceptIndexedLookups() throws Exception {
+        assertTrue(checker.check("SELECT * FROM posts WHERE user_id = :userId").isEmpty());
+        assertTrue(checker.check("SELECT * FROM posts WHERE id = ?").isEmpty());
+    }
+
+    @Test
+    public void testShouldRejectStatementsThatDoNotMatchTheSchema() {
+        assertThrows(SQLException.class, () -> checker.check("SELECT title FROM posts"));
+    }
+}
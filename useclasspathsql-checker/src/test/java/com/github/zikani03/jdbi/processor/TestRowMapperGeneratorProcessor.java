@@ -0,0 +1,191 @@
+package com.github.zikani03.jdbi.processor;
+
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.mapper.MappingException;
+import org.jdbi.v3.core.mapper.RowMapper;
+import org.jdbi.v3.sqlobject.statement.SqlQuery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link RowMapperGeneratorProcessor}, compiling a SqlObject with the processor and mapping rows of an
+ * in-memory HSQLDB database with the generated mapper
+ */
+public class TestRowMapperGeneratorProcessor {
+
+    private static final String PERSON = "package people;\n"
+        + "public class Person {\n"
+        + "    private final String name;\n"
+        + "    private Integer age;\n"
+        + "    public Person(String name) { this.name = name; }\n"
+        + "    public String getName() { return name; }\n"
+        + "    public Integer getAge() { return age; }\n"
+        + "    public void setAge(Integer age) { this.age = age; }\n"
+        + "}\n";
+
+    private static final String PEOPLE_DAO = "package people;\n"
+        + "public interface PeopleDAO {\n"
+        + "    @org.jdbi.v3.sqlobject.statement.SqlQuery(\"SELECT name, age FROM people\")\n"
+        + "    java.util.List<Person> list();\n"
+        + "}\n";
+
+    private static final String ENABLED = "-A" + RowMapperGeneratorProcessor.OPTION_GENERATE + "=true";
+
+    private Path dir;
+
+    private Jdbi jdbi;
+
+    private Handle handle;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        dir = Files.createTempDirectory("row-mappers");
+        jdbi = Jdbi.create("jdbc:hsqldb:mem:" + dir.getFileName(), "sa", "");
+        handle = jdbi.open();
+        handle.execute("CREATE TABLE people(name VARCHAR(50), age INTEGER)");
+        handle.execute("INSERT INTO people(name, age) VALUES ('John', 42)");
+        handle.execute("INSERT INTO people(name, age) VALUES ('Jane', null)");
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        handle.execute("SHUTDOWN");
+        handle.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void testShouldListGeneratedMappersInTheirOwnIndex() throws Exception {
+        assertTrue(compile(ENABLED));
+
+        Path index = dir.resolve("classes").resolve(RowMapperGeneratorProcessor.INDEX_FILE);
+        assertEquals(Collections.singletonList("people.Person_RowMapper"), Files.readAllLines(index, StandardCharsets.UTF_8));
+        assertFalse(Files.exists(dir.resolve("classes/META-INF/services/org.jdbi.v3.core.mapper.RowMapper")));
+    }
+
+    @Test
+    public void testShouldMapWithConstructorAndSetters() throws Exception {
+        assertTrue(compile(ENABLED));
+
+        try (URLClassLoader loader = classLoader()) {
+            jdbi.registerRowMapper(mapper(loader));
+            List<String> people = new ArrayList<>();
+            Class<?> person = loader.loadClass("people.Person");
+            jdbi.useHandle(h -> h.createQuery("SELECT name, age FROM people ORDER BY name DESC")
+                .mapTo(person)
+                .forEach(p -> people.add(describe(p))));
+
+            assertEquals(Arrays.asList("John:42", "Jane:null"), people);
+        }
+    }
+
+    @Test
+    public void testShouldFailWithMappingExceptionOnMissingConstructorColumn() throws Exception {
+        assertTrue(compile(ENABLED));
+
+        try (URLClassLoader loader = classLoader()) {
+            jdbi.registerRowMapper(mapper(loader));
+            Class<?> person = loader.loadClass("people.Person");
+
+            MappingException e = assertThrows(MappingException.class,
+                () -> jdbi.withHandle(h -> h.createQuery("SELECT age FROM people").mapTo(person).list()));
+
+            assertTrue(e.getMessage(), e.getMessage().contains("'name'"));
+        }
+    }
+
+    @Test
+    public void testShouldNotGenerateUnlessTurnedOn() throws Exception {
+        assertTrue(compile());
+
+        assertFalse(Files.exists(dir.resolve("classes").resolve(RowMapperGeneratorProcessor.INDEX_FILE)));
+        assertFalse(Files.exists(dir.resolve("classes/people/Person_RowMapper.class")));
+    }
+
+    @Test
+    public void testShouldLeaveTypesWithJdbiMapperAnnotationsAlone() throws Exception {
+        assertTrue(compileWith(PERSON.replace("public Person(String name)",
+            "public Person(@org.jdbi.v3.core.mapper.Nested String name)"), ENABLED));
+
+        assertFalse(Files.exists(dir.resolve("classes").resolve(RowMapperGeneratorProcessor.INDEX_FILE)));
+        assertFalse(Files.exists(dir.resolve("classes/people/Person_RowMapper.class")));
+    }
+
+    private boolean compile(String... options) throws IOException {
+        return compileWith(PERSON, options);
+    }
+
+    private boolean compileWith(String personSource, String... options) throws IOException {
+        Path sources = Files.createDirectories(dir.resolve("src/people"));
+        Path person = Files.write(sources.resolve("Person.java"), personSource.getBytes(StandardCharsets.UTF_8));
+        Path dao = Files.write(sources.resolve("PeopleDAO.java"), PEOPLE_DAO.getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(dir.resolve("classes"));
+        Files.createDirectories(dir.resolve("generated"));
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+            "-classpath", classPathOf(SqlQuery.class) + File.pathSeparator + classPathOf(Jdbi.class),
+            "-d", dir.resolve("classes").toString(),
+            "-s", dir.resolve("generated").toString()));
+        args.addAll(Arrays.asList(options));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            Iterable<? extends JavaFileObject> units = files.getJavaFileObjects(person.toFile(), dao.toFile());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, null, args, null, units);
+            task.setProcessors(Collections.singletonList(new RowMapperGeneratorProcessor()));
+            return task.call();
+        }
+    }
+
+    private static String classPathOf(Class<?> type) throws IOException {
+        try {
+            return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private URLClassLoader classLoader() throws IOException {
+        return new URLClassLoader(new URL[] {dir.resolve("classes").toUri().toURL()}, getClass().getClassLoader());
+    }
+
+    private static RowMapper<?> mapper(ClassLoader loader) throws ReflectiveOperationException {
+        return (RowMapper<?>) loader.loadClass("people.Person_RowMapper").getDeclaredConstructor().newInstance();
+    }
+
+    private static String describe(Object person) {
+        try {
+            return person.getClass().getMethod("getName").invoke(person) + ":" + person.getClass().getMethod("getAge").invoke(person);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}